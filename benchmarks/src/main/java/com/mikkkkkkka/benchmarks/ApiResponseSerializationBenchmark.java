@@ -0,0 +1,79 @@
+package com.mikkkkkkka.benchmarks;
+
+import com.mikkkkkkka.common.model.CatColor;
+import com.mikkkkkkka.common.model.dto.ApiResponse;
+import com.mikkkkkkka.common.model.dto.CatDto;
+import com.mikkkkkkka.common.rpc.codec.RpcCodec;
+import com.mikkkkkkka.common.rpc.codec.RpcCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+// Reply serialization through the Jackson2JsonMessageConverter the services used to reply with,
+// against the codecs they reply with now
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ApiResponseSerializationBenchmark {
+
+    @Param({"1", "100"})
+    private int catCount;
+
+    private Jackson2JsonMessageConverter converter;
+    private RpcCodec json;
+    private RpcCodec cbor;
+    private ApiResponse<?> response;
+
+    @Setup
+    public void setUp() {
+        converter = new Jackson2JsonMessageConverter();
+        RpcCodecs codecs = new RpcCodecs();
+        json = codecs.byName("json");
+        cbor = codecs.byName("cbor");
+        List<CatDto> cats = LongStream.range(0, catCount)
+                .mapToObj(id -> new CatDto(id,
+                        "Cat " + id,
+                        LocalDate.of(2019, 4, 12).plusDays(id),
+                        "Siberian",
+                        CatColor.values()[(int) (id % CatColor.values().length)],
+                        7L,
+                        List.of(id + 1, id + 2, id + 3),
+                        1L))
+                .toList();
+        response = catCount == 1 ? ApiResponse.ok("Cat Service", cats.get(0)) : ApiResponse.ok("Cat Service", cats);
+    }
+
+    @Benchmark
+    public Message converter() {
+        return converter.toMessage(response, new MessageProperties());
+    }
+
+    @Benchmark
+    public byte[] json() {
+        return json.encode(response);
+    }
+
+    @Benchmark
+    public byte[] cbor() {
+        return cbor.encode(response);
+    }
+}
@@ -0,0 +1,75 @@
+package com.mikkkkkkka.benchmarks;
+
+import com.mikkkkkkka.cat.model.entity.Cat;
+import com.mikkkkkkka.common.model.CatColor;
+import com.mikkkkkkka.common.model.dto.CatDto;
+import com.mikkkkkkka.common.model.dto.OwnerDto;
+import com.mikkkkkkka.owner.model.entity.Owner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+// Entity -> DTO mapping done for every cat and owner the services return
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EntityMappingBenchmark {
+
+    @Param({"0", "8", "128"})
+    private int friendCount;
+
+    private Cat cat;
+    private Owner owner;
+
+    @Setup
+    public void setUp() {
+        Set<Long> friendIds = LongStream.range(0, friendCount)
+                .map(id -> 1000 + id)
+                .boxed()
+                .collect(Collectors.toCollection(HashSet::new));
+        cat = Cat.builder()
+                .id(42L)
+                .name("Barsik")
+                .birthday(LocalDate.of(2019, 4, 12))
+                .breed("Siberian")
+                .color(CatColor.GRAY)
+                .ownerId(7L)
+                .friendIds(friendIds)
+                .version(4L)
+                .build();
+        owner = Owner.builder()
+                .id(7L)
+                .name("Ivan")
+                .birthday(LocalDate.of(1990, 1, 30))
+                .version(2L)
+                .build();
+    }
+
+    @Benchmark
+    public CatDto catToDto() {
+        return cat.toDto();
+    }
+
+    @Benchmark
+    public OwnerDto ownerToDto() {
+        return owner.toDto();
+    }
+}
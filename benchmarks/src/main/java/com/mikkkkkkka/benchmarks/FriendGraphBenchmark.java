@@ -0,0 +1,104 @@
+package com.mikkkkkkka.benchmarks;
+
+import com.mikkkkkkka.cat.graph.FriendGraph;
+import com.mikkkkkkka.common.model.dto.CatDistance;
+import com.mikkkkkkka.common.model.dto.FriendComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Traversals of the in-memory friend graph over a random graph with `friendCount` friends per cat on average
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FriendGraphBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int catCount;
+
+    @Param({"8"})
+    private int friendCount;
+
+    private FriendGraph graph;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        int count = catCount * friendCount;
+        long[][] rows = new long[count][];
+        for (int row = 0; row < count; row += 2) {
+            long cat1Id = 1 + random.nextInt(catCount);
+            long cat2Id = 1 + random.nextInt(catCount);
+            rows[row] = new long[]{cat1Id, cat2Id};
+            rows[row + 1] = new long[]{cat2Id, cat1Id};
+        }
+        Arrays.sort(rows, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        long[] frienderIds = new long[count];
+        long[] friendeeIds = new long[count];
+        for (int row = 0; row < count; row++) {
+            frienderIds[row] = rows[row][0];
+            friendeeIds[row] = rows[row][1];
+        }
+        graph = new FriendGraph();
+        graph.beginLoad();
+        graph.load(frienderIds, friendeeIds, count);
+    }
+
+    private long randomCat() {
+        return 1 + random.nextInt(catCount);
+    }
+
+    @Benchmark
+    public long[] mutualFriends() {
+        return graph.mutualFriends(randomCat(), randomCat());
+    }
+
+    @Benchmark
+    public List<CatDistance> friendsWithinTwo() {
+        return graph.friendsWithin(randomCat(), 2, 1000);
+    }
+
+    @Benchmark
+    public long[] shortestPath() {
+        return graph.shortestPath(randomCat(), randomCat());
+    }
+
+    @Benchmark
+    public FriendComponent component() {
+        return graph.component(randomCat(), 100);
+    }
+
+    @Benchmark
+    public FriendComponent componentAfterUpdate() {
+        // an update drops the component labelling, so this relabels the whole graph
+        long catId = randomCat();
+        graph.removeFriendship(catId, catId);
+        return graph.component(catId, 100);
+    }
+
+    @Benchmark
+    public void befriendAndUnfriend() {
+        long cat1Id = randomCat();
+        long cat2Id = randomCat();
+        graph.addFriendship(cat1Id, cat2Id);
+        graph.removeFriendship(cat1Id, cat2Id);
+    }
+}
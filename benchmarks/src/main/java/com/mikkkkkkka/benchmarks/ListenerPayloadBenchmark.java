@@ -0,0 +1,99 @@
+package com.mikkkkkkka.benchmarks;
+
+import com.mikkkkkkka.common.model.CatColor;
+import com.mikkkkkkka.common.model.dto.CatDto;
+import com.mikkkkkkka.common.model.filter.CatFilter;
+import com.mikkkkkkka.common.rpc.codec.RpcCodec;
+import com.mikkkkkkka.common.rpc.codec.RpcCodecs;
+import com.mikkkkkkka.common.rpc.request.CatBatchRequest;
+import com.mikkkkkkka.common.rpc.request.CatListRequest;
+import com.mikkkkkkka.common.rpc.request.CatPairRequest;
+import com.mikkkkkkka.common.rpc.request.ExportRequest;
+import com.mikkkkkkka.common.rpc.request.FetchRequest;
+import com.mikkkkkkka.common.rpc.request.IdRequest;
+import com.mikkkkkkka.common.rpc.request.IdsRequest;
+import com.mikkkkkkka.common.rpc.request.OwnedCatRequest;
+import com.mikkkkkkka.common.rpc.request.UpdateCatRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+// Payload decoding as CatMessageListener does it before calling a handler.
+// One action per request type: the other actions decode the same record and cost the same.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ListenerPayloadBenchmark {
+
+    @Param({"CREATE_CAT",
+            "CREATE_CATS",
+            "GET_CAT_BY_ID",
+            "GET_CAT_VERSION",
+            "UPDATE_CAT",
+            "BEFRIEND_CATS",
+            "GET_ALL_CATS_FILTERED",
+            "EXPORT_CATS",
+            "GET_CATS_BY_OWNER_IDS",
+            "SET_OWNER_TO_CAT"})
+    private String action;
+
+    @Param({"json", "cbor"})
+    private String codecName;
+
+    private RpcCodec codec;
+    private Class<?> requestType;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        codec = new RpcCodecs().byName(codecName);
+        CatDto cat = new CatDto(42L,
+                "Barsik",
+                LocalDate.of(2019, 4, 12),
+                "Siberian",
+                CatColor.GRAY,
+                7L,
+                List.of(3L, 5L, 8L, 13L),
+                4L);
+        Object request = switch (action) {
+            case "CREATE_CAT" -> cat;
+            case "CREATE_CATS" -> new CatBatchRequest(Collections.nCopies(200, cat));
+            case "GET_CAT_BY_ID" -> new FetchRequest(null, 42L, null);
+            case "GET_CAT_VERSION" -> new IdRequest(42L);
+            case "UPDATE_CAT" -> new UpdateCatRequest(null, 42L, cat);
+            case "BEFRIEND_CATS" -> new CatPairRequest(null, 42L, 43L);
+            case "GET_ALL_CATS_FILTERED" -> new CatListRequest(
+                    new CatFilter(7L, List.of(CatColor.GRAY, CatColor.BLACK),
+                            LocalDate.of(2015, 1, 1), null, List.of("id", "name")),
+                    0, 50, "name", "eyJrIjoiQmFyc2lrIiwiaWQiOjQyfQ");
+            case "EXPORT_CATS" -> new ExportRequest(1000L, 500);
+            case "GET_CATS_BY_OWNER_IDS" -> new IdsRequest(LongStream.range(0, 50).boxed().toList());
+            case "SET_OWNER_TO_CAT" -> new OwnedCatRequest(7L, 42L);
+            default -> throw new IllegalArgumentException(action);
+        };
+        requestType = request.getClass();
+        payload = codec.encode(request);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return codec.decode(payload, requestType);
+    }
+}
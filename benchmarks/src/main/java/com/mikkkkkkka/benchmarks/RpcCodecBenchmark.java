@@ -0,0 +1,107 @@
+package com.mikkkkkkka.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mikkkkkkka.common.model.CatColor;
+import com.mikkkkkkka.common.model.dto.ApiResponse;
+import com.mikkkkkkka.common.model.dto.CatDto;
+import com.mikkkkkkka.common.rpc.codec.RpcCodec;
+import com.mikkkkkkka.common.rpc.codec.RpcCodecs;
+import com.mikkkkkkka.common.rpc.request.UpdateCatRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Decodes an UPDATE_CAT request and encodes its reply the way the listeners used to
+// (String -> Map -> parseLong/convertValue) and through the typed codecs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RpcCodecBenchmark {
+
+    private ObjectMapper legacyMapper;
+    private RpcCodec json;
+    private RpcCodec cbor;
+    private CatDto cat;
+    private byte[] jsonRequest;
+    private byte[] cborRequest;
+
+    @Setup
+    public void setUp() {
+        legacyMapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .build();
+        RpcCodecs codecs = new RpcCodecs();
+        json = codecs.byName("json");
+        cbor = codecs.byName("cbor");
+        cat = new CatDto(42L,
+                "Barsik",
+                LocalDate.of(2019, 4, 12),
+                "Siberian",
+                CatColor.values()[0],
+                7L,
+                List.of(3L, 5L, 8L, 13L),
+                4L);
+        UpdateCatRequest request = new UpdateCatRequest(null, 42L, cat);
+        jsonRequest = json.encode(request);
+        cborRequest = cbor.encode(request);
+    }
+
+    @Benchmark
+    public CatDto decodeLegacy() throws JsonProcessingException {
+        String payload = new String(jsonRequest);
+        Map<String, Object> updateData = legacyMapper.readValue(payload,
+                new TypeReference<>() {
+                });
+        long catId = Long.parseLong(updateData.get("id").toString());
+        CatDto catDetails = legacyMapper.convertValue(updateData.get("cat"), CatDto.class);
+        return catId == catDetails.id() ? catDetails : null;
+    }
+
+    @Benchmark
+    public CatDto decodeJson() {
+        UpdateCatRequest request = json.decode(jsonRequest, UpdateCatRequest.class);
+        return request.id() == request.cat().id() ? request.cat() : null;
+    }
+
+    @Benchmark
+    public CatDto decodeCbor() {
+        UpdateCatRequest request = cbor.decode(cborRequest, UpdateCatRequest.class);
+        return request.id() == request.cat().id() ? request.cat() : null;
+    }
+
+    @Benchmark
+    public byte[] encodeLegacy() throws JsonProcessingException {
+        return legacyMapper.writeValueAsString(ApiResponse.ok("Cat Service", cat))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return json.encode(ApiResponse.ok("Cat Service", cat));
+    }
+
+    @Benchmark
+    public byte[] encodeCbor() {
+        return cbor.encode(ApiResponse.ok("Cat Service", cat));
+    }
+}
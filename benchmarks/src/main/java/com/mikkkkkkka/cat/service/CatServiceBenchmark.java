@@ -0,0 +1,95 @@
+package com.mikkkkkkka.cat.service;
+
+import com.mikkkkkkka.cat.model.entity.Cat;
+import com.mikkkkkkka.common.model.CatColor;
+import com.mikkkkkkka.common.model.filter.CatFilter;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+// Lives in the service's package to reach the package-private helpers of CatServiceImpl.
+// The criteria builder comes from a session factory that never opens a connection.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CatServiceBenchmark {
+
+    @Param({"8", "128"})
+    private int friendCount;
+
+    private SessionFactory sessionFactory;
+    private CriteriaBuilder criteriaBuilder;
+    private CatFilter filter;
+    private Set<Long> friendIds;
+    private List<Long> requestedIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Cat.class)
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect")
+                .setProperty("hibernate.boot.allow_jdbc_metadata_access", "false")
+                .setProperty("hibernate.hbm2ddl.auto", "none")
+                .buildSessionFactory();
+        criteriaBuilder = sessionFactory.getCriteriaBuilder();
+        filter = new CatFilter(7L,
+                List.of(CatColor.GRAY, CatColor.BLACK),
+                LocalDate.of(2015, 1, 1),
+                LocalDate.of(2024, 1, 1),
+                null);
+
+        friendIds = LongStream.range(0, friendCount)
+                .map(id -> 1000 + id)
+                .boxed()
+                .collect(Collectors.toCollection(HashSet::new));
+        // Clients send the ids in any order
+        requestedIds = LongStream.range(0, friendCount)
+                .map(id -> 1000 + friendCount - 1 - id)
+                .boxed()
+                .toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Predicate buildSpecification() {
+        CriteriaQuery<Cat> query = criteriaBuilder.createQuery(Cat.class);
+        Root<Cat> root = query.from(Cat.class);
+        return CatServiceImpl.buildSpecification(filter).toPredicate(root, query, criteriaBuilder);
+    }
+
+    @Benchmark
+    public boolean friendListModified() {
+        return CatServiceImpl.friendListModified(friendIds, requestedIds);
+    }
+}
@@ -0,0 +1,14 @@
+package com.mikkkkkkka.cat.dao;
+
+import com.mikkkkkkka.cat.model.entity.Cat;
+import jakarta.persistence.Tuple;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface CatProjectionRepository {
+
+    List<Tuple> findTuples(Specification<Cat> spec, Collection<String> attributes, Sort sort, long offset, int limit);
+}
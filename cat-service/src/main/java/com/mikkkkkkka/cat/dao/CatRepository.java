@@ -1,13 +1,58 @@
 package com.mikkkkkkka.cat.dao;
 
 import com.mikkkkkkka.cat.model.entity.Cat;
+import com.mikkkkkkka.cat.model.projection.CatFriendship;
+import com.mikkkkkkka.cat.model.projection.CatOwnership;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
-public interface CatRepository extends JpaRepository<Cat, Long>, JpaSpecificationExecutor<Cat> {
+public interface CatRepository extends JpaRepository<Cat, Long>, JpaSpecificationExecutor<Cat>, CatProjectionRepository {
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     List<Cat> findByOwnerId(Long ownerId);
-}
\ No newline at end of file
+
+    // Filtered pages repeat a few filter shapes; the ids and counts are cached until the cats table changes
+    @Override
+    @QueryHints(value = @QueryHint(name = HINT_CACHEABLE, value = "true"), forCounting = true)
+    Page<Cat> findAll(Specification<Cat> spec, Pageable pageable);
+
+    @Query("select c.id as id, c.ownerId as ownerId from Cat c where c.ownerId in :ownerIds order by c.id")
+    List<CatOwnership> findOwnershipsByOwnerIdIn(@Param("ownerIds") Collection<Long> ownerIds);
+
+    @Query("select c.id as catId, f as friendId from Cat c join c.friendIds f where c.id in :catIds order by f")
+    List<CatFriendship> findFriendshipsByCatIdIn(@Param("catIds") Collection<Long> catIds);
+
+    // Cats whose friend lists hold the id, loaded so a delete can drop it through their cached collections
+    @Query("select c from Cat c join c.friendIds f where f = :id")
+    List<Cat> findBefriendersOf(@Param("id") long id);
+
+    @Query("select c.version from Cat c where c.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    @Query("select c.version from Cat c where c.id = :id and c.ownerId = :ownerId")
+    Optional<Long> findVersionByIdAndOwnerId(@Param("id") long id, @Param("ownerId") long ownerId);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "100"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<Cat> streamByIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
+}
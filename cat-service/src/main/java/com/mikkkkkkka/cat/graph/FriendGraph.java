@@ -0,0 +1,535 @@
+package com.mikkkkkkka.cat.graph;
+
+import com.mikkkkkkka.common.model.dto.CatDistance;
+import com.mikkkkkkka.common.model.dto.FriendComponent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Friendships of all cats as primitive arrays.
+// The bulk of the graph is a CSR snapshot: the friends of cat ids[v] are the vertices
+// targets[offsets[v]] .. targets[offsets[v + 1] - 1], sorted. Rows changed since the snapshot are replaced whole
+// by `overrides[v]`, and cats that got their first friend since are appended after the snapshot's vertices.
+// Once either grows past a threshold the current state is folded into a new snapshot.
+@Component
+public class FriendGraph {
+
+    private static final int EXTRA_CAPACITY = 1024;
+    private static final int[] NO_FRIENDS = new int[0];
+
+    private static final long ADD = 0;
+    private static final long REMOVE = 1;
+    private static final long REMOVE_CAT = 2;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[0];
+    private int[] offsets = {0};
+    private int[] targets = new int[0];
+    private int[][] overrides = new int[EXTRA_CAPACITY][];
+    private int overrideCount;
+    private final long[] extraIds = new long[EXTRA_CAPACITY];
+    private int extraCount;
+
+    // Updates made while a snapshot is being read from the database, replayed on top of it
+    private long[] journal;
+    private int journalSize;
+
+    // Labelling of the connected components, computed on demand and dropped by every update
+    private volatile Components components;
+
+    public void beginLoad() {
+        lock.writeLock().lock();
+        try {
+            journal = new long[48];
+            journalSize = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void abortLoad() {
+        lock.writeLock().lock();
+        try {
+            journal = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // `frienderIds` and `friendeeIds` are the rows of service.friendships ordered by both columns
+    public void load(long[] frienderIds, long[] friendeeIds, int count) {
+        long[] vertexIds = new long[count * 2];
+        System.arraycopy(frienderIds, 0, vertexIds, 0, count);
+        System.arraycopy(friendeeIds, 0, vertexIds, count, count);
+        Arrays.sort(vertexIds);
+        int vertexCount = unique(vertexIds);
+        long[] newIds = Arrays.copyOf(vertexIds, vertexCount);
+
+        int[] newOffsets = new int[vertexCount + 1];
+        int[] newTargets = new int[count];
+        int edgeCount = 0;
+        for (int row = 0; row < count; row++) {
+            if (row > 0 && frienderIds[row] == frienderIds[row - 1] && friendeeIds[row] == friendeeIds[row - 1])
+                continue;
+            newOffsets[Arrays.binarySearch(newIds, frienderIds[row]) + 1]++;
+            newTargets[edgeCount++] = Arrays.binarySearch(newIds, friendeeIds[row]);
+        }
+        for (int v = 0; v < vertexCount; v++)
+            newOffsets[v + 1] += newOffsets[v];
+
+        lock.writeLock().lock();
+        try {
+            install(newIds, newOffsets, Arrays.copyOf(newTargets, edgeCount));
+            long[] replay = journal;
+            int replaySize = journalSize;
+            journal = null;
+            for (int i = 0; replay != null && i < replaySize; i += 3)
+                apply(replay[i], replay[i + 1], replay[i + 2]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addFriendship(long cat1Id, long cat2Id) {
+        update(ADD, cat1Id, cat2Id);
+    }
+
+    public void removeFriendship(long cat1Id, long cat2Id) {
+        update(REMOVE, cat1Id, cat2Id);
+    }
+
+    public void removeCat(long catId) {
+        update(REMOVE_CAT, catId, 0);
+    }
+
+    private void update(long operation, long cat1Id, long cat2Id) {
+        lock.writeLock().lock();
+        try {
+            if (journal != null) {
+                if (journalSize + 3 > journal.length)
+                    journal = Arrays.copyOf(journal, journal.length * 2);
+                journal[journalSize++] = operation;
+                journal[journalSize++] = cat1Id;
+                journal[journalSize++] = cat2Id;
+            }
+            apply(operation, cat1Id, cat2Id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(long operation, long cat1Id, long cat2Id) {
+        components = null;
+        if (operation == ADD) {
+            int v1 = indexOrAdd(cat1Id);
+            int v2 = indexOrAdd(cat2Id);
+            // adding the second cat may have compacted the graph and renumbered the first
+            v1 = indexOf(cat1Id);
+            insert(v1, v2);
+            insert(v2, v1);
+        } else if (operation == REMOVE) {
+            int v1 = indexOf(cat1Id);
+            int v2 = indexOf(cat2Id);
+            if (v1 < 0 || v2 < 0)
+                return;
+            delete(v1, v2);
+            delete(v2, v1);
+        } else {
+            int v = indexOf(cat1Id);
+            if (v < 0)
+                return;
+            int[] row = copyRow(v);
+            for (int friend : row)
+                delete(friend, v);
+            setRow(v, NO_FRIENDS);
+        }
+        if (overrideCount > Math.max(EXTRA_CAPACITY, ids.length / 8))
+            compact();
+    }
+
+    // A cat with friends exists; a deleted one keeps an empty row until the next snapshot
+    public boolean hasFriends(long catId) {
+        lock.readLock().lock();
+        try {
+            int v = indexOf(catId);
+            return v >= 0 && rowEnd(v) > rowStart(v);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] mutualFriends(long cat1Id, long cat2Id) {
+        lock.readLock().lock();
+        try {
+            int v1 = indexOf(cat1Id);
+            int v2 = indexOf(cat2Id);
+            if (v1 < 0 || v2 < 0)
+                return new long[0];
+            int[] row1 = rowArray(v1);
+            int[] row2 = rowArray(v2);
+            int i = rowStart(v1);
+            int j = rowStart(v2);
+            int end1 = rowEnd(v1);
+            int end2 = rowEnd(v2);
+            long[] mutual = new long[Math.min(end1 - i, end2 - j)];
+            int count = 0;
+            while (i < end1 && j < end2) {
+                if (row1[i] < row2[j])
+                    i++;
+                else if (row1[i] > row2[j])
+                    j++;
+                else {
+                    if (row1[i] != v1 && row1[i] != v2)
+                        mutual[count++] = idOf(row1[i]);
+                    i++;
+                    j++;
+                }
+            }
+            mutual = Arrays.copyOf(mutual, count);
+            Arrays.sort(mutual);
+            return mutual;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Cats reachable in 1..maxDepth friendships, nearest first, ties by id
+    public List<CatDistance> friendsWithin(long catId, int maxDepth, int limit) {
+        lock.readLock().lock();
+        try {
+            List<CatDistance> result = new ArrayList<>();
+            int start = indexOf(catId);
+            if (start < 0)
+                return result;
+            IntIntMap visited = new IntIntMap();
+            visited.putIfAbsent(start, 0);
+            int[] frontier = {start};
+            int frontierSize = 1;
+            for (int depth = 1; depth <= maxDepth && frontierSize > 0 && result.size() < limit; depth++) {
+                int[] next = new int[16];
+                int nextSize = 0;
+                for (int f = 0; f < frontierSize; f++) {
+                    int v = frontier[f];
+                    int[] row = rowArray(v);
+                    for (int k = rowStart(v), end = rowEnd(v); k < end; k++) {
+                        if (!visited.putIfAbsent(row[k], depth))
+                            continue;
+                        if (nextSize == next.length)
+                            next = Arrays.copyOf(next, nextSize * 2);
+                        next[nextSize++] = row[k];
+                    }
+                }
+                long[] level = new long[nextSize];
+                for (int k = 0; k < nextSize; k++)
+                    level[k] = idOf(next[k]);
+                Arrays.sort(level);
+                for (int k = 0; k < nextSize && result.size() < limit; k++)
+                    result.add(new CatDistance(level[k], depth));
+                frontier = next;
+                frontierSize = nextSize;
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bidirectional breadth-first search; empty when the cats are not connected
+    public long[] shortestPath(long fromId, long toId) {
+        lock.readLock().lock();
+        try {
+            int from = indexOf(fromId);
+            int to = indexOf(toId);
+            if (from < 0 || to < 0)
+                return fromId == toId ? new long[]{fromId} : new long[0];
+            if (from == to)
+                return new long[]{fromId};
+
+            Side forward = new Side(from);
+            Side backward = new Side(to);
+            while (forward.frontierSize > 0 && backward.frontierSize > 0) {
+                Side expanding = forward.frontierSize <= backward.frontierSize ? forward : backward;
+                Side other = expanding == forward ? backward : forward;
+                int meeting = expanding.expand(other);
+                if (meeting >= 0)
+                    return path(forward, backward, meeting);
+            }
+            return new long[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The connected component of a cat; its id is the smallest cat id in it
+    public FriendComponent component(long catId, int limit) {
+        lock.readLock().lock();
+        try {
+            int v = indexOf(catId);
+            if (v < 0)
+                return new FriendComponent(catId, 1, List.of(catId));
+            Components labelled = components;
+            if (labelled == null) {
+                // readers that race here compute the same labelling, updates wait for the read lock
+                labelled = labelComponents();
+                components = labelled;
+            }
+            int label = labelled.label[v];
+            int start = labelled.starts[label];
+            int size = labelled.starts[label + 1] - start;
+            List<Long> cats = new ArrayList<>(Math.min(limit, size));
+            for (int k = 0; k < size && k < limit; k++)
+                cats.add(labelled.members[start + k]);
+            return new FriendComponent(labelled.members[start], size, cats);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Cat ids grouped by component and sorted within it: component l is members[starts[l]] .. members[starts[l + 1] - 1]
+    private record Components(int[] label, int[] starts, long[] members) {
+    }
+
+    private Components labelComponents() {
+        int vertexCount = ids.length + extraCount;
+        int[] label = new int[vertexCount];
+        Arrays.fill(label, -1);
+        int[] queue = new int[vertexCount];
+        int[] sizes = new int[vertexCount + 1];
+        int labelCount = 0;
+        for (int root = 0; root < vertexCount; root++) {
+            if (label[root] >= 0)
+                continue;
+            label[root] = labelCount;
+            queue[0] = root;
+            int head = 0;
+            int tail = 1;
+            while (head < tail) {
+                int v = queue[head++];
+                int[] row = rowArray(v);
+                for (int k = rowStart(v), end = rowEnd(v); k < end; k++) {
+                    if (label[row[k]] >= 0)
+                        continue;
+                    label[row[k]] = labelCount;
+                    queue[tail++] = row[k];
+                }
+            }
+            sizes[++labelCount] = tail;
+        }
+        int[] starts = Arrays.copyOf(sizes, labelCount + 1);
+        for (int l = 0; l < labelCount; l++)
+            starts[l + 1] += starts[l];
+        // vertices are numbered in id order apart from the extra cats, so only their components need sorting
+        int[] next = Arrays.copyOf(starts, labelCount);
+        long[] members = new long[vertexCount];
+        for (int v = 0; v < vertexCount; v++)
+            members[next[label[v]]++] = idOf(v);
+        boolean[] sorted = new boolean[labelCount];
+        for (int k = 0; k < extraCount; k++) {
+            int l = label[ids.length + k];
+            if (!sorted[l]) {
+                Arrays.sort(members, starts[l], starts[l + 1]);
+                sorted[l] = true;
+            }
+        }
+        return new Components(label, starts, members);
+    }
+
+    private long[] path(Side forward, Side backward, int meeting) {
+        int forwardLength = forward.depth.get(meeting);
+        int backwardLength = backward.depth.get(meeting);
+        long[] path = new long[forwardLength + backwardLength + 1];
+        int v = meeting;
+        for (int k = forwardLength; k >= 0; k--) {
+            path[k] = idOf(v);
+            v = forward.parent.get(v);
+        }
+        v = backward.parent.get(meeting);
+        for (int k = forwardLength + 1; k < path.length; k++) {
+            path[k] = idOf(v);
+            v = backward.parent.get(v);
+        }
+        return path;
+    }
+
+    // One end of the bidirectional search: parents and depths of the vertices it reached, and its current level
+    private final class Side {
+
+        private final IntIntMap parent = new IntIntMap();
+        private final IntIntMap depth = new IntIntMap();
+        private int[] frontier;
+        private int frontierSize;
+        private int level;
+
+        private Side(int start) {
+            parent.putIfAbsent(start, -1);
+            depth.putIfAbsent(start, 0);
+            frontier = new int[]{start};
+            frontierSize = 1;
+        }
+
+        // Expands a whole level and returns the meeting vertex of the shortest path through it, or -1
+        private int expand(Side other) {
+            level++;
+            int[] next = new int[16];
+            int nextSize = 0;
+            int meeting = -1;
+            int best = Integer.MAX_VALUE;
+            for (int f = 0; f < frontierSize; f++) {
+                int v = frontier[f];
+                int[] row = rowArray(v);
+                for (int k = rowStart(v), end = rowEnd(v); k < end; k++) {
+                    int friend = row[k];
+                    if (!parent.putIfAbsent(friend, v))
+                        continue;
+                    depth.putIfAbsent(friend, level);
+                    int otherDepth = other.depth.get(friend);
+                    if (otherDepth != IntIntMap.MISSING && level + otherDepth < best) {
+                        best = level + otherDepth;
+                        meeting = friend;
+                    }
+                    if (nextSize == next.length)
+                        next = Arrays.copyOf(next, nextSize * 2);
+                    next[nextSize++] = friend;
+                }
+            }
+            frontier = next;
+            frontierSize = nextSize;
+            return meeting;
+        }
+    }
+
+    private int indexOf(long catId) {
+        int v = Arrays.binarySearch(ids, catId);
+        if (v >= 0)
+            return v;
+        for (int k = 0; k < extraCount; k++)
+            if (extraIds[k] == catId)
+                return ids.length + k;
+        return -1;
+    }
+
+    private int indexOrAdd(long catId) {
+        int v = indexOf(catId);
+        if (v >= 0)
+            return v;
+        if (extraCount == EXTRA_CAPACITY)
+            compact();
+        extraIds[extraCount] = catId;
+        v = ids.length + extraCount++;
+        setRow(v, NO_FRIENDS);
+        return v;
+    }
+
+    private long idOf(int v) {
+        return v < ids.length ? ids[v] : extraIds[v - ids.length];
+    }
+
+    private int[] rowArray(int v) {
+        int[] row = overrides[v];
+        return row != null ? row : targets;
+    }
+
+    private int rowStart(int v) {
+        return overrides[v] != null ? 0 : offsets[v];
+    }
+
+    private int rowEnd(int v) {
+        int[] row = overrides[v];
+        return row != null ? row.length : offsets[v + 1];
+    }
+
+    private int[] copyRow(int v) {
+        return Arrays.copyOfRange(rowArray(v), rowStart(v), rowEnd(v));
+    }
+
+    private void setRow(int v, int[] row) {
+        if (overrides[v] == null)
+            overrideCount++;
+        overrides[v] = row;
+    }
+
+    private void insert(int v, int friend) {
+        int[] row = copyRow(v);
+        int position = Arrays.binarySearch(row, friend);
+        if (position >= 0)
+            return;
+        position = -position - 1;
+        int[] updated = new int[row.length + 1];
+        System.arraycopy(row, 0, updated, 0, position);
+        updated[position] = friend;
+        System.arraycopy(row, position, updated, position + 1, row.length - position);
+        setRow(v, updated);
+    }
+
+    private void delete(int v, int friend) {
+        int[] row = copyRow(v);
+        int position = Arrays.binarySearch(row, friend);
+        if (position < 0)
+            return;
+        int[] updated = new int[row.length - 1];
+        System.arraycopy(row, 0, updated, 0, position);
+        System.arraycopy(row, position + 1, updated, position, updated.length - position);
+        setRow(v, updated);
+    }
+
+    // Folds the overrides and extra cats into a fresh snapshot, ordered by cat id again
+    private void compact() {
+        int vertexCount = ids.length + extraCount;
+        // snapshot vertices are already in id order, merge the few extra ones in
+        int[] extras = new int[extraCount];
+        for (int k = 0; k < extraCount; k++) {
+            int position = k;
+            while (position > 0 && extraIds[extras[position - 1]] > extraIds[k]) {
+                extras[position] = extras[position - 1];
+                position--;
+            }
+            extras[position] = k;
+        }
+        int[] byId = new int[vertexCount];
+        for (int v = 0, snapshot = 0, extra = 0; v < vertexCount; v++)
+            byId[v] = extra == extraCount || snapshot < ids.length && ids[snapshot] < extraIds[extras[extra]]
+                    ? snapshot++
+                    : ids.length + extras[extra++];
+        int[] renumbered = new int[vertexCount];
+        long[] newIds = new long[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            renumbered[byId[v]] = v;
+            newIds[v] = idOf(byId[v]);
+        }
+
+        int[] newOffsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++)
+            newOffsets[v + 1] = newOffsets[v] + rowEnd(byId[v]) - rowStart(byId[v]);
+        int[] newTargets = new int[newOffsets[vertexCount]];
+        for (int v = 0; v < vertexCount; v++) {
+            int old = byId[v];
+            int[] row = rowArray(old);
+            int position = newOffsets[v];
+            for (int k = rowStart(old), end = rowEnd(old); k < end; k++)
+                newTargets[position++] = renumbered[row[k]];
+            Arrays.sort(newTargets, newOffsets[v], newOffsets[v + 1]);
+        }
+        install(newIds, newOffsets, newTargets);
+    }
+
+    private void install(long[] newIds, int[] newOffsets, int[] newTargets) {
+        ids = newIds;
+        offsets = newOffsets;
+        targets = newTargets;
+        overrides = new int[newIds.length + EXTRA_CAPACITY][];
+        overrideCount = 0;
+        extraCount = 0;
+    }
+
+    private static int unique(long[] sorted) {
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++)
+            if (count == 0 || sorted[i] != sorted[count - 1])
+                sorted[count++] = sorted[i];
+        return count;
+    }
+}
@@ -0,0 +1,99 @@
+package com.mikkkkkkka.cat.graph;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Reads the friendships table into the graph at startup and again every `reloadInterval`.
+// Local befriend/unfriend calls update the graph as they commit; the reload picks up the writes of other instances.
+@Component
+public class FriendGraphLoader implements DisposableBean {
+
+    private static final String SELECT_FRIENDSHIPS = """
+            select friender_id, friendee_id
+            from service.friendships
+            order by friender_id, friendee_id
+            """;
+
+    private final FriendGraph graph;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    @Autowired
+    public FriendGraphLoader(FriendGraph graph,
+                             JdbcTemplate jdbcTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${graph.reload-interval}") Duration reloadInterval) {
+        this.graph = graph;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "friend-graph-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reloadQuietly,
+                reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PostConstruct
+    void load() {
+        graph.beginLoad();
+        try {
+            Rows rows = new Rows();
+            jdbcTemplate.query(SELECT_FRIENDSHIPS, resultSet -> {
+                rows.add(resultSet.getLong(1), resultSet.getLong(2));
+            });
+            graph.load(rows.frienderIds, rows.friendeeIds, rows.count);
+        } catch (RuntimeException exception) {
+            graph.abortLoad();
+            throw exception;
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            load();
+        } catch (RuntimeException exception) {
+            // keep serving the current graph, the next round retries. A graph that stops following the other
+            // instances shows up as a growing counter, tagged with what went wrong.
+            Counter.builder("graph.reload.failures")
+                    .description("Periodic friend graph reloads that failed and kept the previous graph")
+                    .tag("exception", exception.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class Rows {
+
+        private long[] frienderIds = new long[1024];
+        private long[] friendeeIds = new long[1024];
+        private int count;
+
+        private void add(long frienderId, long friendeeId) {
+            if (count == frienderIds.length) {
+                frienderIds = Arrays.copyOf(frienderIds, count * 2);
+                friendeeIds = Arrays.copyOf(friendeeIds, count * 2);
+            }
+            frienderIds[count] = frienderId;
+            friendeeIds[count++] = friendeeId;
+        }
+    }
+}
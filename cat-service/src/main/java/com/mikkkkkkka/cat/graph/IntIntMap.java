@@ -0,0 +1,71 @@
+package com.mikkkkkkka.cat.graph;
+
+import java.util.Arrays;
+
+// Open-addressing map of non-negative int keys, used as the visited set of a traversal.
+// Sized to what the traversal touches rather than to the whole graph.
+final class IntIntMap {
+
+    static final int MISSING = Integer.MIN_VALUE;
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    IntIntMap() {
+        keys = new int[16];
+        values = new int[16];
+        Arrays.fill(keys, FREE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(int key) {
+        return keys[slot(keys, key)] == key;
+    }
+
+    int get(int key) {
+        int slot = slot(keys, key);
+        return keys[slot] == key ? values[slot] : MISSING;
+    }
+
+    // Returns false and keeps the old value when the key is already present
+    boolean putIfAbsent(int key, int value) {
+        int slot = slot(keys, key);
+        if (keys[slot] == key)
+            return false;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length)
+            grow();
+        return true;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, FREE);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE)
+                continue;
+            int slot = slot(keys, oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int slot(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (keys[slot] != FREE && keys[slot] != key)
+            slot = slot + 1 & mask;
+        return slot;
+    }
+}
@@ -4,12 +4,17 @@ import com.mikkkkkkka.common.model.CatColor;
 import com.mikkkkkkka.common.model.dto.CatDto;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.util.Set;
 
 @Entity
 @Table(name = "cats", schema = "service")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "cats")
 @Data
 @Builder
 @NoArgsConstructor
@@ -17,7 +22,8 @@ import java.util.List;
 public class Cat {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cats_seq")
+    @SequenceGenerator(name = "cats_seq", sequenceName = "cats_seq", schema = "service", allocationSize = 50)
     private Long id;
 
     private String name;
@@ -32,28 +38,22 @@ public class Cat {
     @Column(name = "owner_id")
     private Long ownerId;
 
-    @ManyToMany(fetch = FetchType.EAGER)
-    @JoinTable(name = "friendships", schema = "service",
-            joinColumns = @JoinColumn(name = "friender_id"),
-            inverseJoinColumns = @JoinColumn(name = "friendee_id"))
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
+    // Only the ids: mapping needs nothing else, and an entity collection would drag in the friends' friends.
+    // Loaded on first access, batched across the cats of one session.
+    @ElementCollection
+    @CollectionTable(name = "friendships", schema = "service",
+            joinColumns = @JoinColumn(name = "friender_id"))
+    @Column(name = "friendee_id")
+    @BatchSize(size = 50)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "cat-friends")
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @Setter(AccessLevel.NONE)
-    private List<Cat> friends;
-
-    static String getStringCatArray(List<Cat> cats) {
-        if (cats == null) return "[]";
-        StringBuilder builder = new StringBuilder(cats.getClass().getSimpleName());
-        if (cats.isEmpty()) return builder.append("[]").toString();
-        builder.append("[");
-        cats.forEach(cat -> builder.append(String.format("Cat(id=%d)", cat.getId())).append(", "));
-        builder.replace(builder.length() - 2, builder.length(), "]");
-        return builder.toString();
-    }
-
-    @ToString.Include(name = "friends")
-    String formatFriends() {
-        return getStringCatArray(friends);
-    }
+    private Set<Long> friendIds;
 
     public CatDto toDto() {
         return new CatDto(id,
@@ -62,8 +62,9 @@ public class Cat {
                 breed,
                 color,
                 ownerId,
-                friends.stream()
-                        .map(Cat::getId)
-                        .toList());
+                friendIds.stream()
+                        .sorted()
+                        .toList(),
+                version);
     }
 }
\ No newline at end of file
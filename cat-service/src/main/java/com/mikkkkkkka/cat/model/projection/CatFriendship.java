@@ -0,0 +1,8 @@
+package com.mikkkkkkka.cat.model.projection;
+
+public interface CatFriendship {
+
+    Long getCatId();
+
+    Long getFriendId();
+}
@@ -0,0 +1,8 @@
+package com.mikkkkkkka.cat.model.projection;
+
+public interface CatOwnership {
+
+    Long getId();
+
+    Long getOwnerId();
+}
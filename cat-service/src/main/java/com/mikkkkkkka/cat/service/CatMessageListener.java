@@ -1,170 +1,347 @@
 package com.mikkkkkkka.cat.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mikkkkkkka.cat.config.RabbitMQConfig;
+import com.mikkkkkkka.common.exception.ForbiddenException;
 import com.mikkkkkkka.common.exception.ImproperUpdateException;
 import com.mikkkkkkka.common.exception.ResourceNotFoundException;
+import com.mikkkkkkka.common.exception.VersionMismatchException;
 import com.mikkkkkkka.common.model.dto.ApiResponse;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
+import com.mikkkkkkka.common.model.dto.CatDistance;
 import com.mikkkkkkka.common.model.dto.CatDto;
+import com.mikkkkkkka.common.model.dto.FriendComponent;
 import com.mikkkkkkka.common.model.filter.CatFilter;
+import com.mikkkkkkka.common.rpc.RpcHeaders;
+import com.mikkkkkkka.common.rpc.codec.MalformedPayloadException;
+import com.mikkkkkkka.common.rpc.codec.RpcCodec;
+import com.mikkkkkkka.common.rpc.codec.RpcCodecs;
+import com.mikkkkkkka.common.rpc.request.CatBatchRequest;
+import com.mikkkkkkka.common.rpc.request.CatListRequest;
+import com.mikkkkkkka.common.rpc.request.CatPairRequest;
+import com.mikkkkkkka.common.rpc.request.ExportRequest;
+import com.mikkkkkkka.common.rpc.request.FetchRequest;
+import com.mikkkkkkka.common.rpc.request.GraphRequest;
+import com.mikkkkkkka.common.rpc.request.IdRequest;
+import com.mikkkkkkka.common.rpc.request.IdsRequest;
+import com.mikkkkkkka.common.rpc.request.OwnedCatRequest;
+import com.mikkkkkkka.common.rpc.request.UpdateCatRequest;
+import com.mikkkkkkka.common.tracing.Spans;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Tracer;
 import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageBuilderSupport;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class CatMessageListener {
 
     private static final String PATH = "Cat Service";
+    private static final CatFilter NO_FILTER = new CatFilter(null, null, null, null, null);
 
     private final CatService catService;
-    private final ObjectMapper objectMapper;
+    private final FriendGraphService friendGraphService;
+    private final RpcCodecs codecs;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
 
     @Autowired
-    public CatMessageListener(CatService catService, ObjectMapper objectMapper) {
+    public CatMessageListener(CatService catService,
+                              FriendGraphService friendGraphService,
+                              RpcCodecs codecs,
+                              MeterRegistry meterRegistry,
+                              Tracer tracer) {
         this.catService = catService;
-        this.objectMapper = objectMapper;
+        this.friendGraphService = friendGraphService;
+        this.codecs = codecs;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer;
     }
 
-    @RabbitListener(queues = RabbitMQConfig.CAT_QUEUE)
-    public ApiResponse<?> handleMessage(Message message) {
+    @RabbitListener(id = RabbitMQConfig.READ_LISTENER,
+            queues = RabbitMQConfig.CAT_READ_QUEUE,
+            containerFactory = "readListenerContainerFactory")
+    @RabbitListener(id = RabbitMQConfig.SCAN_LISTENER,
+            queues = RabbitMQConfig.CAT_SCAN_QUEUE,
+            containerFactory = "scanListenerContainerFactory")
+    @RabbitListener(id = RabbitMQConfig.WRITE_LISTENER,
+            queues = RabbitMQConfig.CAT_WRITE_QUEUE,
+            containerFactory = "writeListenerContainerFactory")
+    public Message handleMessage(Message message) {
+        RpcCodec codec = codecs.forContentType(message.getMessageProperties().getContentType());
+        String action = message.getMessageProperties().getHeader("action");
+        long start = System.nanoTime();
+        // the listener observation continues the gateway's trace, SQL spans nest under this one
+        ApiResponse<?> response = Spans.inSpan(tracer, "rpc handle", action, () -> handle(codec, message));
+        record(action, response.status(), System.nanoTime() - start);
+        return Spans.inSpan(tracer, "rpc encode", action, () -> {
+            if (RpcHeaders.RAW.equals(message.getMessageProperties().getHeader(RpcHeaders.REPLY_MODE)))
+                return rawReply(response);
+            return MessageBuilder.withBody(codec.encode(response))
+                    .setContentType(codec.contentType())
+                    .build();
+        });
+    }
+
+    private Message rawReply(ApiResponse<?> response) {
+        RpcCodec json = codecs.json();
+        byte[] body = response.status() == 200 ? json.encode(response.data()) : new byte[0];
+        MessageBuilderSupport<Message> builder = MessageBuilder.withBody(body)
+                .setContentType(json.contentType())
+                .setHeader(RpcHeaders.STATUS, response.status());
+        if (response.message() != null)
+            builder.setHeader(RpcHeaders.MESSAGE, response.message());
+        if (response.data() instanceof CatDto cat && cat.version() != null)
+            builder.setHeader(RpcHeaders.VERSION, cat.version());
+        if (response.data() instanceof Map<?, ?> cat && cat.get("version") instanceof Long version)
+            builder.setHeader(RpcHeaders.VERSION, version);
+        return builder.build();
+    }
+
+    // Decoding and the service call, per action and reply status
+    private void record(String action, int status, long nanos) {
+        Timer.builder("rpc.server.requests")
+                .tag("action", action == null ? "none" : action)
+                .tag("status", String.valueOf(status))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private ApiResponse<?> handle(RpcCodec codec, Message message) {
         try {
             String action = message.getMessageProperties().getHeader("action");
-            String payload = new String(message.getBody());
+            byte[] payload = message.getBody();
 
             return switch (action) {
-                case "CREATE_CAT" -> handleCreateCat(payload);
-                case "GET_CAT_BY_ID" -> handleGetCatById(payload);
-                case "UPDATE_CAT" -> handleUpdateCat(payload);
-                case "DELETE_CAT" -> handleDeleteCat(payload);
-                case "BEFRIEND_CATS" -> handleBefriendCats(payload);
-                case "UNFRIEND_CATS" -> handleUnfriendCats(payload);
-                case "GET_ALL_CATS" -> handleGetAllCats(payload);
-                case "GET_ALL_CATS_FILTERED" -> handleGetAllCatsFiltered(payload);
-                case "GET_CATS_BY_OWNER_ID" -> handleGetCatsByOwnerId(payload);
-                case "SET_OWNER_TO_CAT" -> handleSetOwnerToCat(payload);
-                case "UNSET_OWNER_FROM_CAT" -> handleUnsetOwnerFromCat(payload);
-                case "OWNER_OWNS_CAT" -> handleOwnerOwnsCat(payload);
+                case "CREATE_CAT" -> handleCreateCat(codec.decode(payload, CatDto.class));
+                case "CREATE_CATS" -> handleCreateCats(codec.decode(payload, CatBatchRequest.class));
+                case "GET_CAT_BY_ID" -> handleGetCatById(codec.decode(payload, FetchRequest.class));
+                case "GET_CAT_VERSION" -> handleGetCatVersion(codec.decode(payload, IdRequest.class));
+                case "GET_CAT_VERSION_IF_OWNED" -> handleGetCatVersionIfOwned(codec.decode(payload, OwnedCatRequest.class));
+                case "UPDATE_CAT" -> handleUpdateCat(codec.decode(payload, UpdateCatRequest.class));
+                case "UPDATE_CATS" -> handleUpdateCats(codec.decode(payload, CatBatchRequest.class));
+                case "DELETE_CAT" -> handleDeleteCat(codec.decode(payload, IdRequest.class));
+                case "BEFRIEND_CATS" -> handleBefriendCats(codec.decode(payload, CatPairRequest.class));
+                case "UNFRIEND_CATS" -> handleUnfriendCats(codec.decode(payload, CatPairRequest.class));
+                case "GET_ALL_CATS" -> handleGetAllCats(codec.decode(payload, CatListRequest.class));
+                case "GET_ALL_CATS_FILTERED" -> handleGetAllCatsFiltered(codec.decode(payload, CatListRequest.class));
+                case "EXPORT_CATS" -> handleExportCats(codec.decode(payload, ExportRequest.class));
+                case "GET_CATS_BY_OWNER_ID" -> handleGetCatsByOwnerId(codec.decode(payload, IdRequest.class));
+                case "GET_CATS_BY_OWNER_IDS" -> handleGetCatsByOwnerIds(codec.decode(payload, IdsRequest.class));
+                case "SET_OWNER_TO_CAT" -> handleSetOwnerToCat(codec.decode(payload, OwnedCatRequest.class));
+                case "UNSET_OWNER_FROM_CAT" -> handleUnsetOwnerFromCat(codec.decode(payload, IdRequest.class));
+                case "SET_OWNER_TO_CAT_IF_UNOWNED" -> handleSetOwnerToCatIfUnowned(codec.decode(payload, OwnedCatRequest.class));
+                case "UNSET_OWNER_FROM_CAT_IF_OWNED" -> handleUnsetOwnerFromCatIfOwned(codec.decode(payload, OwnedCatRequest.class));
+                case "OWNER_OWNS_CAT" -> handleOwnerOwnsCat(codec.decode(payload, OwnedCatRequest.class));
+                case "GET_CAT_IF_OWNED" -> handleGetCatIfOwned(codec.decode(payload, FetchRequest.class));
+                case "UPDATE_CAT_IF_OWNED" -> handleUpdateCatIfOwned(codec.decode(payload, UpdateCatRequest.class));
+                case "DELETE_CAT_IF_OWNED" -> handleDeleteCatIfOwned(codec.decode(payload, OwnedCatRequest.class));
+                case "BEFRIEND_CATS_IF_OWNED" -> handleBefriendCatsIfOwned(codec.decode(payload, CatPairRequest.class));
+                case "UNFRIEND_CATS_IF_OWNED" -> handleUnfriendCatsIfOwned(codec.decode(payload, CatPairRequest.class));
+                case "GET_MUTUAL_FRIENDS" -> handleGetMutualFriends(codec.decode(payload, GraphRequest.class));
+                case "GET_FRIENDS_WITHIN" -> handleGetFriendsWithin(codec.decode(payload, GraphRequest.class));
+                case "GET_FRIENDSHIP_PATH" -> handleGetFriendshipPath(codec.decode(payload, GraphRequest.class));
+                case "GET_FRIEND_COMPONENT" -> handleGetFriendComponent(codec.decode(payload, GraphRequest.class));
                 default -> throw new RuntimeException("Unknown action: " + action);
             };
-        } catch (JsonProcessingException | IllegalArgumentException exception) {
-            return new ApiResponse<>(400, "Invalid payload", PATH, exception);
+        } catch (MalformedPayloadException exception) {
+            return new ApiResponse<>(400, "Invalid payload", PATH, null);
+        } catch (IllegalArgumentException exception) {
+            return new ApiResponse<>(400, exception.getMessage(), PATH, null);
         } catch (ImproperUpdateException exception) {
-            return new ApiResponse<>(400, exception.getMessage(), PATH, exception);
+            return new ApiResponse<>(400, exception.getMessage(), PATH, null);
+        } catch (VersionMismatchException exception) {
+            return new ApiResponse<>(412, exception.getMessage(), PATH, null);
+        } catch (ObjectOptimisticLockingFailureException exception) {
+            return new ApiResponse<>(412, "Cat was modified concurrently", PATH, null);
+        } catch (ForbiddenException exception) {
+            return new ApiResponse<>(403, exception.getMessage(), PATH, null);
         } catch (ResourceNotFoundException exception) {
-            return new ApiResponse<>(404, exception.getMessage(), PATH, exception);
+            return new ApiResponse<>(404, exception.getMessage(), PATH, null);
         } catch (Exception exception) {
-            return new ApiResponse<>(500, exception.getMessage(), PATH, exception);
+            return new ApiResponse<>(500, exception.getMessage(), PATH, null);
         }
     }
 
-    private ApiResponse<?> handleCreateCat(String payload) throws JsonProcessingException {
-        CatDto newCat = objectMapper.readValue(payload, CatDto.class);
+    private ApiResponse<?> handleCreateCat(CatDto newCat) {
         CatDto cat = catService.createCat(newCat);
         return ApiResponse.ok(PATH, cat);
     }
 
-    private ApiResponse<?> handleGetCatById(String payload) throws JsonProcessingException, ResourceNotFoundException {
-        long id = objectMapper.readValue(payload, Long.class);
-        CatDto cat = catService.getCat(id);
+    private ApiResponse<?> handleCreateCats(CatBatchRequest request) {
+        List<BatchItemResult<CatDto>> results = catService.createCats(request.cats());
+        return ApiResponse.ok(PATH, results);
+    }
+
+    private ApiResponse<?> handleGetCatById(FetchRequest request) throws ResourceNotFoundException {
+        if (request.fields() != null)
+            return ApiResponse.ok(PATH, catService.getCatProjected(request.id(), request.fields()));
+        CatDto cat = catService.getCat(request.id());
         return ApiResponse.ok(PATH, cat);
     }
 
-    private ApiResponse<?> handleUpdateCat(String payload) throws JsonProcessingException, ResourceNotFoundException, ImproperUpdateException {
-        Map<String, Object> updateData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        long catId = Long.parseLong(updateData.get("id").toString());
-        CatDto catDetails = objectMapper.convertValue(updateData.get("cat"), CatDto.class);
-        CatDto cat = catService.updateCat(catId, catDetails);
+    private ApiResponse<?> handleGetCatVersion(IdRequest request) {
+        Long version = catService.getCatVersion(request.id()).orElse(null);
+        return ApiResponse.ok(PATH, version);
+    }
+
+    private ApiResponse<?> handleGetCatVersionIfOwned(OwnedCatRequest request) {
+        Long version = catService.getCatVersionIfOwned(request.ownerId(), request.catId()).orElse(null);
+        return ApiResponse.ok(PATH, version);
+    }
+
+    private ApiResponse<?> handleUpdateCat(UpdateCatRequest request) throws ResourceNotFoundException, ImproperUpdateException {
+        CatDto cat = catService.updateCat(request.id(), request.cat());
         return ApiResponse.ok(PATH, cat);
     }
 
-    private ApiResponse<?> handleDeleteCat(String payload) throws JsonProcessingException {
-        long id = objectMapper.readValue(payload, Long.class);
-        catService.deleteCatById(id);
+    private ApiResponse<?> handleUpdateCats(CatBatchRequest request) {
+        List<BatchItemResult<CatDto>> results = catService.updateCats(request.cats());
+        return ApiResponse.ok(PATH, results);
+    }
+
+    private ApiResponse<?> handleDeleteCat(IdRequest request) {
+        catService.deleteCatById(request.id());
         return ApiResponse.ok(PATH, "Deleted cat successfully");
     }
 
-    private ApiResponse<?> handleBefriendCats(String payload) throws JsonProcessingException, ResourceNotFoundException {
-        Map<String, Object> befriendData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        long cat1Id = Long.parseLong(befriendData.get("cat1Id").toString());
-        long cat2Id = Long.parseLong(befriendData.get("cat2Id").toString());
-        catService.befriendCats(cat1Id, cat2Id);
+    private ApiResponse<?> handleBefriendCats(CatPairRequest request) throws ResourceNotFoundException {
+        catService.befriendCats(request.cat1Id(), request.cat2Id());
         return ApiResponse.ok(PATH, "Befriended cats successfully");
     }
 
-    private ApiResponse<?> handleUnfriendCats(String payload) throws JsonProcessingException, ResourceNotFoundException {
-        Map<String, Object> unfriendData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        long cat1Id = Long.parseLong(unfriendData.get("cat1Id").toString());
-        long cat2Id = Long.parseLong(unfriendData.get("cat2Id").toString());
-        catService.unfriendCats(cat1Id, cat2Id);
+    private ApiResponse<?> handleUnfriendCats(CatPairRequest request) throws ResourceNotFoundException {
+        catService.unfriendCats(request.cat1Id(), request.cat2Id());
         return ApiResponse.ok(PATH, "Unfriended cats successfully");
     }
 
-    private ApiResponse<?> handleGetAllCats(String payload) throws JsonProcessingException, IllegalArgumentException {
-        Map<String, Object> getAllData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        int page = Integer.parseInt(getAllData.get("page").toString());
-        int size = Integer.parseInt(getAllData.get("size").toString());
-        List<CatDto> cats = catService.getAllCats(PageRequest.of(page, size));
+    private ApiResponse<?> handleGetAllCats(CatListRequest request) throws IllegalArgumentException {
+        if (request.sort() != null)
+            return ApiResponse.ok(PATH, catService.getAllCats(request.sort(), request.after(), request.size()));
+        List<CatDto> cats = catService.getAllCats(PageRequest.of(request.page(), request.size()));
         return ApiResponse.ok(PATH, cats);
     }
 
-    private ApiResponse<?> handleGetAllCatsFiltered(String payload) throws JsonProcessingException, IllegalArgumentException {
-        Map<String, Object> getAllData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        CatFilter filter = objectMapper.convertValue(getAllData.get("filter"), CatFilter.class);
-        int page = Integer.parseInt(getAllData.get("page").toString());
-        int size = Integer.parseInt(getAllData.get("size").toString());
-        List<CatDto> cats = catService.getAllCatsFiltered(filter, PageRequest.of(page, size));
+    private ApiResponse<?> handleGetAllCatsFiltered(CatListRequest request) throws IllegalArgumentException {
+        CatFilter filter = request.filter() == null ? NO_FILTER : request.filter();
+        if (filter.fields() != null)
+            return request.sort() != null
+                    ? ApiResponse.ok(PATH, catService.getAllCatsProjected(filter, request.sort(), request.after(), request.size()))
+                    : ApiResponse.ok(PATH, catService.getAllCatsProjected(filter, PageRequest.of(request.page(), request.size())));
+        if (request.sort() != null)
+            return ApiResponse.ok(PATH, catService.getAllCatsFiltered(filter, request.sort(), request.after(), request.size()));
+        List<CatDto> cats = catService.getAllCatsFiltered(filter, PageRequest.of(request.page(), request.size()));
         return ApiResponse.ok(PATH, cats);
     }
 
-    private ApiResponse<?> handleGetCatsByOwnerId(String payload) throws JsonProcessingException {
-        long ownerId = objectMapper.readValue(payload, Long.class);
-        List<Long> catIds = catService.getCatsByOwnerId(ownerId)
-                .stream()
-                .map(CatDto::id)
-                .toList();
+    private ApiResponse<?> handleExportCats(ExportRequest request) throws IllegalArgumentException {
+        List<CatDto> cats = catService.exportCats(request.afterId(), request.limit());
+        return ApiResponse.ok(PATH, cats);
+    }
+
+    // Only the ids are sent back, so the entities and their friend lists are not loaded
+    private ApiResponse<?> handleGetCatsByOwnerId(IdRequest request) {
+        List<Long> catIds = catService.getCatIdsByOwnerIds(List.of(request.id())).get(request.id());
         return ApiResponse.ok(PATH, catIds);
     }
 
-    private ApiResponse<?> handleSetOwnerToCat(String payload) throws JsonProcessingException, ResourceNotFoundException {
-        Map<String, Object> setOwnerData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        long catId = Long.parseLong(setOwnerData.get("catId").toString());
-        long ownerId = Long.parseLong(setOwnerData.get("ownerId").toString());
-        catService.setOwnerToCat(catId, ownerId);
+    private ApiResponse<?> handleGetCatsByOwnerIds(IdsRequest request) {
+        Map<Long, List<Long>> catIds = catService.getCatIdsByOwnerIds(request.ids());
+        return ApiResponse.ok(PATH, catIds);
+    }
+
+    private ApiResponse<?> handleSetOwnerToCat(OwnedCatRequest request) throws ResourceNotFoundException {
+        catService.setOwnerToCat(request.catId(), request.ownerId());
         return ApiResponse.ok(PATH, "Owner is set successfully");
     }
 
-    private ApiResponse<?> handleUnsetOwnerFromCat(String payload) throws ResourceNotFoundException {
-        long catId = Long.parseLong(payload);
-        catService.unsetOwnerFromCat(catId);
+    private ApiResponse<?> handleUnsetOwnerFromCat(IdRequest request) throws ResourceNotFoundException {
+        catService.unsetOwnerFromCat(request.id());
         return ApiResponse.ok(PATH, "Owner is unset successfully");
     }
 
-    private ApiResponse<?> handleOwnerOwnsCat(String payload) throws JsonProcessingException, ResourceNotFoundException {
-        Map<String, Object> ownerVerificationData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        long ownerId = Long.parseLong(ownerVerificationData.get("ownerId").toString());
-        long ownersCatId = Long.parseLong(ownerVerificationData.get("catId").toString());
-        boolean isOwner = catService.ownerOwnsCat(ownerId, ownersCatId);
+    private ApiResponse<?> handleSetOwnerToCatIfUnowned(OwnedCatRequest request) throws ResourceNotFoundException, ForbiddenException {
+        catService.setOwnerToCatIfUnowned(requireOwner(request.ownerId()), request.catId());
+        return ApiResponse.ok(PATH, "Owner is set successfully");
+    }
+
+    private ApiResponse<?> handleUnsetOwnerFromCatIfOwned(OwnedCatRequest request) throws ResourceNotFoundException, ForbiddenException {
+        catService.unsetOwnerFromCatIfOwned(requireOwner(request.ownerId()), request.catId());
+        return ApiResponse.ok(PATH, "Owner is unset successfully");
+    }
+
+    private ApiResponse<?> handleOwnerOwnsCat(OwnedCatRequest request) throws ResourceNotFoundException {
+        boolean isOwner = catService.ownerOwnsCat(request.ownerId(), request.catId());
         return ApiResponse.ok(PATH, isOwner);
     }
-}
\ No newline at end of file
+
+    private ApiResponse<?> handleGetCatIfOwned(FetchRequest request) throws ResourceNotFoundException, ForbiddenException {
+        long ownerId = requireOwner(request.ownerId());
+        if (request.fields() != null)
+            return ApiResponse.ok(PATH, catService.getCatIfOwnedProjected(ownerId, request.id(), request.fields()));
+        CatDto cat = catService.getCatIfOwned(ownerId, request.id());
+        return ApiResponse.ok(PATH, cat);
+    }
+
+    private ApiResponse<?> handleUpdateCatIfOwned(UpdateCatRequest request) throws ResourceNotFoundException, ForbiddenException, ImproperUpdateException {
+        CatDto cat = catService.updateCatIfOwned(requireOwner(request.ownerId()), request.id(), request.cat());
+        return ApiResponse.ok(PATH, cat);
+    }
+
+    private ApiResponse<?> handleDeleteCatIfOwned(OwnedCatRequest request) throws ResourceNotFoundException, ForbiddenException {
+        catService.deleteCatIfOwned(request.ownerId(), request.catId());
+        return ApiResponse.ok(PATH, "Deleted cat successfully");
+    }
+
+    private ApiResponse<?> handleBefriendCatsIfOwned(CatPairRequest request) throws ResourceNotFoundException, ForbiddenException {
+        catService.befriendCatsIfOwned(requireOwner(request.ownerId()), request.cat1Id(), request.cat2Id());
+        return ApiResponse.ok(PATH, "Befriended cats successfully");
+    }
+
+    private ApiResponse<?> handleUnfriendCatsIfOwned(CatPairRequest request) throws ResourceNotFoundException, ForbiddenException {
+        catService.unfriendCatsIfOwned(requireOwner(request.ownerId()), request.cat1Id(), request.cat2Id());
+        return ApiResponse.ok(PATH, "Unfriended cats successfully");
+    }
+
+    private ApiResponse<?> handleGetMutualFriends(GraphRequest request) throws ResourceNotFoundException, ForbiddenException {
+        List<Long> friends = friendGraphService.getMutualFriends(request.ownerId(), request.id(), requireOther(request.otherId()));
+        return ApiResponse.ok(PATH, friends);
+    }
+
+    private ApiResponse<?> handleGetFriendsWithin(GraphRequest request) throws ResourceNotFoundException, ForbiddenException {
+        List<CatDistance> friends = friendGraphService.getFriendsWithin(request.ownerId(), request.id(), request.depth(), request.limit());
+        return ApiResponse.ok(PATH, friends);
+    }
+
+    private ApiResponse<?> handleGetFriendshipPath(GraphRequest request) throws ResourceNotFoundException, ForbiddenException {
+        List<Long> path = friendGraphService.getFriendshipPath(request.ownerId(), request.id(), requireOther(request.otherId()));
+        return ApiResponse.ok(PATH, path);
+    }
+
+    private ApiResponse<?> handleGetFriendComponent(GraphRequest request) throws ResourceNotFoundException, ForbiddenException {
+        FriendComponent component = friendGraphService.getFriendComponent(request.ownerId(), request.id(), request.limit());
+        return ApiResponse.ok(PATH, component);
+    }
+
+    private static long requireOther(Long otherId) {
+        if (otherId == null)
+            throw new IllegalArgumentException("otherId is required");
+        return otherId;
+    }
+
+    private static long requireOwner(Long ownerId) {
+        if (ownerId == null)
+            throw new IllegalArgumentException("ownerId is required");
+        return ownerId;
+    }
+}
@@ -1,42 +1,91 @@
 package com.mikkkkkkka.cat.service;
 
 
+import com.mikkkkkkka.common.exception.ForbiddenException;
 import com.mikkkkkkka.common.exception.ImproperUpdateException;
 import com.mikkkkkkka.common.exception.ResourceNotFoundException;
+import com.mikkkkkkka.common.exception.VersionMismatchException;
+import com.mikkkkkkka.common.model.dto.CursorPage;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
 import com.mikkkkkkka.common.model.dto.CatDto;
 import com.mikkkkkkka.common.model.filter.CatFilter;
 import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface CatService {
 
     CatDto createCat(CatDto cat);
 
+    List<BatchItemResult<CatDto>> createCats(List<CatDto> cats);
+
     CatDto getCat(long id) throws ResourceNotFoundException;
 
-    CatDto updateCat(long id, CatDto cat) throws ResourceNotFoundException, ImproperUpdateException;
+    @Transactional
+    CatDto getCatIfOwned(long ownerId, long id) throws ResourceNotFoundException, ForbiddenException;
+
+    Optional<Long> getCatVersion(long id);
+
+    Optional<Long> getCatVersionIfOwned(long ownerId, long id);
+
+    CatDto updateCat(long id, CatDto cat) throws ResourceNotFoundException, ImproperUpdateException, VersionMismatchException;
+
+    List<BatchItemResult<CatDto>> updateCats(List<CatDto> cats);
+
+    @Transactional
+    CatDto updateCatIfOwned(long ownerId, long id, CatDto cat) throws ResourceNotFoundException, ForbiddenException, ImproperUpdateException;
 
     void deleteCatByDto(CatDto cat);
 
     void deleteCatById(long id);
 
+    @Transactional
+    void deleteCatIfOwned(long ownerId, long id) throws ResourceNotFoundException, ForbiddenException;
+
     @Transactional
     void befriendCats(long cat1Id, long cat2Id) throws ResourceNotFoundException;
 
     @Transactional
     void unfriendCats(long cat1Id, long cat2Id) throws ResourceNotFoundException;
 
+    @Transactional
+    void befriendCatsIfOwned(long ownerId, long cat1Id, long cat2Id) throws ResourceNotFoundException, ForbiddenException;
+
+    @Transactional
+    void unfriendCatsIfOwned(long ownerId, long cat1Id, long cat2Id) throws ResourceNotFoundException, ForbiddenException;
+
     List<CatDto> getAllCats(Pageable pageable);
 
     List<CatDto> getAllCatsFiltered(CatFilter filter, Pageable pageable);
 
+    CursorPage<CatDto> getAllCats(String sort, String after, int size);
+
+    CursorPage<CatDto> getAllCatsFiltered(CatFilter filter, String sort, String after, int size);
+
+    List<Map<String, Object>> getAllCatsProjected(CatFilter filter, Pageable pageable);
+
+    CursorPage<Map<String, Object>> getAllCatsProjected(CatFilter filter, String sort, String after, int size);
+
+    Map<String, Object> getCatProjected(long id, List<String> fields) throws ResourceNotFoundException;
+
+    Map<String, Object> getCatIfOwnedProjected(long ownerId, long id, List<String> fields) throws ResourceNotFoundException, ForbiddenException;
+
+    List<CatDto> exportCats(long afterId, int limit);
+
     List<CatDto> getCatsByOwnerId(long ownerId);
 
+    Map<Long, List<Long>> getCatIdsByOwnerIds(List<Long> ownerIds);
+
     void setOwnerToCat(long catId, long ownerId) throws ResourceNotFoundException;
 
     void unsetOwnerFromCat(long catId) throws ResourceNotFoundException;
 
+    void setOwnerToCatIfUnowned(long ownerId, long catId) throws ResourceNotFoundException, ForbiddenException;
+
+    void unsetOwnerFromCatIfOwned(long ownerId, long catId) throws ResourceNotFoundException, ForbiddenException;
+
     boolean ownerOwnsCat(long ownerId, long catId) throws ResourceNotFoundException;
 }
\ No newline at end of file
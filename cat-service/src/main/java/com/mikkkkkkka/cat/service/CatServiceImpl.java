@@ -1,46 +1,130 @@
 package com.mikkkkkkka.cat.service;
 
 import com.mikkkkkkka.cat.dao.CatRepository;
+import com.mikkkkkkka.cat.graph.FriendGraph;
 import com.mikkkkkkka.cat.model.entity.Cat;
+import com.mikkkkkkka.common.exception.ForbiddenException;
 import com.mikkkkkkka.common.exception.ImproperUpdateException;
 import com.mikkkkkkka.common.exception.ResourceNotFoundException;
+import com.mikkkkkkka.common.exception.VersionMismatchException;
+import com.mikkkkkkka.common.model.dto.CursorPage;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
 import com.mikkkkkkka.common.model.dto.CatDto;
 import com.mikkkkkkka.common.model.filter.CatFilter;
+import com.mikkkkkkka.common.model.pagination.PageCursor;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.criteria.Root;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CatServiceImpl implements CatService {
 
+    private static final int MAX_EXPORT_CHUNK = 1000;
+    private static final int MAX_BATCH_SIZE = 1000;
+    // varchar(255) in the schema
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private static final Set<String> CURSOR_SORTS = Set.of("id", "name", "birthday");
+    private static final List<String> CAT_FIELDS = List.of("id", "name", "birthday", "breed", "color", "ownerId", "friends", "version");
+
     private final CatRepository catRepo;
+    private final FriendGraph friendGraph;
 
     @Autowired
-    public CatServiceImpl(CatRepository catRepo) {
+    public CatServiceImpl(CatRepository catRepo, FriendGraph friendGraph) {
         this.catRepo = catRepo;
+        this.friendGraph = friendGraph;
     }
 
     @Override
     public CatDto createCat(CatDto cat) {
-        Cat catEntity = Cat.builder()
+        return catRepo.save(newCat(cat))
+                .toDto();
+    }
+
+    @Transactional
+    @Override
+    public List<BatchItemResult<CatDto>> createCats(List<CatDto> cats) {
+        checkBatchSize(cats);
+        List<BatchItemResult<CatDto>> results = new ArrayList<>(cats.size());
+        Map<Integer, Cat> inserts = new LinkedHashMap<>();
+        for (int i = 0; i < cats.size(); i++) {
+            String error = newCatError(cats.get(i));
+            results.add(error == null ? null : BatchItemResult.error(i, 400, error));
+            if (error == null)
+                inserts.put(i, newCat(cats.get(i)));
+        }
+
+        List<Cat> savedCats = catRepo.saveAll(inserts.values());
+        catRepo.flush();
+        int saved = 0;
+        for (int index : inserts.keySet())
+            results.set(index, BatchItemResult.ok(index, savedCats.get(saved++).toDto()));
+        return results;
+    }
+
+    // Items are checked one by one before anything is written: a row the database rejects would roll back the
+    // whole batch, and fields a new cat cannot carry would be dropped without a word
+    private static String newCatError(CatDto cat) {
+        if (cat == null)
+            return "Cat is required";
+        if (cat.id() != null)
+            return "A new cat cannot have an id";
+        if (cat.ownerId() != null)
+            return "A new cat cannot have an owner! Use OwnerService.addCat() for that";
+        if (cat.friends() != null && !cat.friends().isEmpty())
+            return "A new cat cannot have friends! Use CatService.befriendCats() for that";
+        return columnError(cat);
+    }
+
+    private static String columnError(CatDto cat) {
+        if (cat.name() != null && cat.name().length() > MAX_TEXT_LENGTH)
+            return "Cat name must not exceed " + MAX_TEXT_LENGTH + " characters";
+        if (cat.breed() != null && cat.breed().length() > MAX_TEXT_LENGTH)
+            return "Cat breed must not exceed " + MAX_TEXT_LENGTH + " characters";
+        return null;
+    }
+
+    private static Cat newCat(CatDto cat) {
+        return Cat.builder()
                 .id(null)
                 .name(cat.name())
                 .birthday(cat.birthday())
                 .breed(cat.breed())
                 .color(cat.color())
                 .ownerId(null)
-                .friends(new ArrayList<>())
+                .friendIds(new HashSet<>())
                 .build();
-        return catRepo.save(catEntity)
-                .toDto();
     }
 
+    @Transactional(readOnly = true)
     @Override
     public CatDto getCat(long id) throws ResourceNotFoundException {
         Cat cat = catRepo.findById(id)
@@ -48,26 +132,90 @@ public class CatServiceImpl implements CatService {
         return cat.toDto();
     }
 
+    @Transactional
+    @Override
+    public CatDto getCatIfOwned(long ownerId, long id) throws ResourceNotFoundException, ForbiddenException {
+        return findOwnedCat(ownerId, id).toDto();
+    }
+
     @Override
-    public CatDto updateCat(long id, CatDto cat) throws ResourceNotFoundException, ImproperUpdateException {
+    public Optional<Long> getCatVersion(long id) {
+        return catRepo.findVersionById(id);
+    }
+
+    @Override
+    public Optional<Long> getCatVersionIfOwned(long ownerId, long id) {
+        return catRepo.findVersionByIdAndOwnerId(id, ownerId);
+    }
+
+    @Transactional
+    @Override
+    public CatDto updateCat(long id, CatDto cat) throws ResourceNotFoundException, ImproperUpdateException, VersionMismatchException {
         final Cat originalCat = catRepo.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Cat not found"));
+        return catRepo.save(applyUpdate(originalCat, id, cat))
+                .toDto();
+    }
 
+    @Transactional
+    @Override
+    public List<BatchItemResult<CatDto>> updateCats(List<CatDto> cats) {
+        checkBatchSize(cats);
+        Map<Long, Cat> originalCats = catRepo.findAllById(cats.stream()
+                        .filter(Objects::nonNull)
+                        .map(CatDto::id)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(Cat::getId, Function.identity()));
+
+        List<BatchItemResult<CatDto>> results = new ArrayList<>(cats.size());
+        Map<Integer, Cat> updates = new LinkedHashMap<>();
+        Set<Long> seenIds = new HashSet<>();
+        for (int i = 0; i < cats.size(); i++) {
+            CatDto cat = cats.get(i);
+            results.add(null);
+            if (cat == null) {
+                results.set(i, BatchItemResult.error(i, 400, "Cat is required"));
+            } else if (cat.id() == null) {
+                results.set(i, BatchItemResult.error(i, 400, "Cat id is required"));
+            } else if (!seenIds.add(cat.id())) {
+                results.set(i, BatchItemResult.error(i, 400, "Cat " + cat.id() + " appears twice in the batch"));
+            } else if (!originalCats.containsKey(cat.id())) {
+                results.set(i, BatchItemResult.error(i, 404, "Cat not found"));
+            } else if (columnError(cat) != null) {
+                results.set(i, BatchItemResult.error(i, 400, columnError(cat)));
+            } else {
+                try {
+                    updates.put(i, applyUpdate(originalCats.get(cat.id()), cat.id(), cat));
+                } catch (VersionMismatchException exception) {
+                    results.set(i, BatchItemResult.error(i, 412, exception.getMessage()));
+                } catch (ImproperUpdateException exception) {
+                    results.set(i, BatchItemResult.error(i, 400, exception.getMessage()));
+                }
+            }
+        }
+
+        List<Cat> savedCats = catRepo.saveAll(updates.values());
+        catRepo.flush();
+        int saved = 0;
+        for (int index : updates.keySet())
+            results.set(index, BatchItemResult.ok(index, savedCats.get(saved++).toDto()));
+        return results;
+    }
+
+    private Cat applyUpdate(Cat originalCat, long id, CatDto cat) throws ImproperUpdateException, VersionMismatchException {
         final boolean idModified = cat.id() != null &&
                 !originalCat.getId().equals(cat.id());
         final boolean ownerModified = cat.ownerId() != null &&
                 !cat.ownerId().equals(originalCat.getOwnerId());
         final boolean friendListModified = cat.friends() != null &&
-                !originalCat.getFriends()
-                        .stream()
-                        .map(Cat::getId)
-                        .sorted()
-                        .toList()
-                        .equals(cat.friends()
-                                .stream()
-                                .sorted()
-                                .toList());
+                friendListModified(originalCat.getFriendIds(), cat.friends());
 
+        if (cat.version() != null && !cat.version().equals(originalCat.getVersion()))
+            throw new VersionMismatchException(
+                    "Cat was modified since version " + cat.version());
         if (idModified)
             throw new ImproperUpdateException(
                     "Cannot update Cat id");
@@ -78,27 +226,62 @@ public class CatServiceImpl implements CatService {
             throw new ImproperUpdateException(
                     "Do not use CatService.updateCat() method for updating the friend list! Use CatService.befriendCats() or CatService.unfriendCats()");
 
-        Cat catEntity = Cat.builder()
+        return Cat.builder()
                 .id(id)
                 .name(cat.name())
                 .birthday(cat.birthday())
                 .breed(cat.breed())
                 .color(cat.color())
                 .ownerId(cat.ownerId())
-                .friends(originalCat.getFriends())
+                .friendIds(originalCat.getFriendIds())
+                .version(originalCat.getVersion())
                 .build();
-        return catRepo.save(catEntity)
-                .toDto();
     }
 
+    static boolean friendListModified(Set<Long> friendIds, List<Long> requestedIds) {
+        return !friendIds.equals(new HashSet<>(requestedIds));
+    }
+
+    private static void checkBatchSize(List<CatDto> cats) {
+        if (cats.size() > MAX_BATCH_SIZE)
+            throw new IllegalArgumentException("Batch size must not exceed " + MAX_BATCH_SIZE);
+    }
+
+    @Transactional
+    @Override
+    public CatDto updateCatIfOwned(long ownerId, long id, CatDto cat) throws ResourceNotFoundException, ForbiddenException, ImproperUpdateException {
+        findOwnedCat(ownerId, id);
+        return updateCat(id, cat);
+    }
+
+    @Transactional
     @Override
     public void deleteCatByDto(CatDto cat) {
-        catRepo.deleteById(cat.id());
+        deleteCatById(cat.id());
     }
 
+    @Transactional
     @Override
     public void deleteCatById(long id) {
+        unfriendAll(id);
         catRepo.deleteById(id);
+        afterCommit(() -> friendGraph.removeCat(id));
+    }
+
+    @Transactional
+    @Override
+    public void deleteCatIfOwned(long ownerId, long id) throws ResourceNotFoundException, ForbiddenException {
+        Cat cat = findOwnedCat(ownerId, id);
+        unfriendAll(id);
+        catRepo.delete(cat);
+        afterCommit(() -> friendGraph.removeCat(id));
+    }
+
+    // The cat's own rows go with its collection. The rows pointing at it are removed through the friends'
+    // collections, so their cached friend lists and versions change with them; a bulk delete would bypass both.
+    private void unfriendAll(long id) {
+        for (Cat friend : catRepo.findBefriendersOf(id))
+            friend.getFriendIds().remove(id);
     }
 
     @Transactional
@@ -108,10 +291,11 @@ public class CatServiceImpl implements CatService {
                 .orElseThrow(() -> new ResourceNotFoundException("Cat-1 not found"));
         Cat catEntity2 = catRepo.findById(cat2Id)
                 .orElseThrow(() -> new ResourceNotFoundException("Cat-2 not found"));
-        catEntity1.getFriends().add(catEntity2);
-        catEntity2.getFriends().add(catEntity1);
+        catEntity1.getFriendIds().add(cat2Id);
+        catEntity2.getFriendIds().add(cat1Id);
         catRepo.save(catEntity1);
         catRepo.save(catEntity2);
+        afterCommit(() -> friendGraph.addFriendship(cat1Id, cat2Id));
     }
 
     @Transactional
@@ -121,12 +305,59 @@ public class CatServiceImpl implements CatService {
                 .orElseThrow(() -> new ResourceNotFoundException("Cat-1 not found"));
         Cat catEntity2 = catRepo.findById(cat2Id)
                 .orElseThrow(() -> new ResourceNotFoundException("Cat-2 not found"));
-        catEntity1.getFriends().remove(catEntity2);
-        catEntity2.getFriends().remove(catEntity1);
+        catEntity1.getFriendIds().remove(cat2Id);
+        catEntity2.getFriendIds().remove(cat1Id);
         catRepo.save(catEntity1);
         catRepo.save(catEntity2);
+        afterCommit(() -> friendGraph.removeFriendship(cat1Id, cat2Id));
+    }
+
+    // The graph must not show a friendship that was rolled back
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    @Transactional
+    @Override
+    public void befriendCatsIfOwned(long ownerId, long cat1Id, long cat2Id) throws ResourceNotFoundException, ForbiddenException {
+        checkOwnsEitherCat(ownerId, cat1Id, cat2Id);
+        befriendCats(cat1Id, cat2Id);
+    }
+
+    @Transactional
+    @Override
+    public void unfriendCatsIfOwned(long ownerId, long cat1Id, long cat2Id) throws ResourceNotFoundException, ForbiddenException {
+        checkOwnsEitherCat(ownerId, cat1Id, cat2Id);
+        unfriendCats(cat1Id, cat2Id);
+    }
+
+    private Cat findOwnedCat(long ownerId, long catId) throws ResourceNotFoundException, ForbiddenException {
+        Cat cat = catRepo.findById(catId)
+                .orElseThrow(() -> new ResourceNotFoundException("Cat not found"));
+        if (!Objects.equals(cat.getOwnerId(), ownerId))
+            throw new ForbiddenException("Cat is not owned by the owner");
+        return cat;
     }
 
+    private void checkOwnsEitherCat(long ownerId, long cat1Id, long cat2Id) throws ResourceNotFoundException, ForbiddenException {
+        Cat catEntity1 = catRepo.findById(cat1Id)
+                .orElseThrow(() -> new ResourceNotFoundException("Cat-1 not found"));
+        Cat catEntity2 = catRepo.findById(cat2Id)
+                .orElseThrow(() -> new ResourceNotFoundException("Cat-2 not found"));
+        if (!Objects.equals(catEntity1.getOwnerId(), ownerId) && !Objects.equals(catEntity2.getOwnerId(), ownerId))
+            throw new ForbiddenException("Neither cat is owned by the owner");
+    }
+
+    @Transactional(readOnly = true)
     @Override
     public List<CatDto> getAllCats(Pageable pageable) {
         return catRepo.findAll(pageable)
@@ -135,6 +366,7 @@ public class CatServiceImpl implements CatService {
                 .toList();
     }
 
+    @Transactional(readOnly = true)
     @Override
     public List<CatDto> getAllCatsFiltered(CatFilter filter, Pageable pageable) {
         Specification<Cat> spec = buildSpecification(filter);
@@ -144,7 +376,233 @@ public class CatServiceImpl implements CatService {
                 .toList();
     }
 
-    private Specification<Cat> buildSpecification(CatFilter filter) {
+    @Transactional(readOnly = true)
+    @Override
+    public List<CatDto> exportCats(long afterId, int limit) {
+        if (limit < 1 || limit > MAX_EXPORT_CHUNK)
+            throw new IllegalArgumentException("Export chunk size must be between 1 and " + MAX_EXPORT_CHUNK);
+        try (Stream<Cat> cats = catRepo.streamByIdGreaterThanOrderByIdAsc(afterId, Limit.of(limit))) {
+            return cats.map(Cat::toDto)
+                    .toList();
+        }
+    }
+
+    // the call below goes through `this`, so it does not open a transaction of its own
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPage<CatDto> getAllCats(String sort, String after, int size) {
+        return getAllCatsFiltered(new CatFilter(null, null, null, null, null), sort, after, size);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPage<CatDto> getAllCatsFiltered(CatFilter filter, String sort, String after, int size) {
+        PageCursor cursor = checkCursor(sort, after, size);
+        List<Cat> cats = seek(buildSpecification(filter), sort, cursor, size, this::findPage);
+        List<CatDto> items = cats.stream()
+                .map(Cat::toDto)
+                .toList();
+        String next = items.size() < size ? null : cursorOf(sort, cats.get(cats.size() - 1)).encode();
+        return new CursorPage<>(items, next);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<Map<String, Object>> getAllCatsProjected(CatFilter filter, Pageable pageable) {
+        List<String> fields = checkFields(filter.fields());
+        List<Tuple> cats = catRepo.findTuples(buildSpecification(filter),
+                columnsOf(fields),
+                pageable.getSort(),
+                pageable.getOffset(),
+                pageable.getPageSize());
+        return toRows(cats, fields);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPage<Map<String, Object>> getAllCatsProjected(CatFilter filter, String sort, String after, int size) {
+        List<String> fields = checkFields(filter.fields());
+        PageCursor cursor = checkCursor(sort, after, size);
+        // the sort key is read even when not requested, the next cursor is built from it
+        Set<String> columns = columnsOf(fields, sort);
+        List<Tuple> cats = seek(buildSpecification(filter), sort, cursor, size,
+                (spec, order, limit) -> catRepo.findTuples(spec, columns, order, 0, limit));
+        String next = cats.size() < size ? null : cursorOf(sort, cats.get(cats.size() - 1)).encode();
+        return new CursorPage<>(toRows(cats, fields), next);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Map<String, Object> getCatProjected(long id, List<String> fields) throws ResourceNotFoundException {
+        List<String> checkedFields = checkFields(fields);
+        Tuple cat = findTuple(id, columnsOf(checkedFields));
+        return toRows(List.of(cat), checkedFields).get(0);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Map<String, Object> getCatIfOwnedProjected(long ownerId, long id, List<String> fields) throws ResourceNotFoundException, ForbiddenException {
+        List<String> checkedFields = checkFields(fields);
+        Tuple cat = findTuple(id, columnsOf(checkedFields, "ownerId"));
+        if (!Objects.equals(cat.get("ownerId"), ownerId))
+            throw new ForbiddenException("Cat is not owned by the owner");
+        return toRows(List.of(cat), checkedFields).get(0);
+    }
+
+    private Tuple findTuple(long id, Set<String> columns) throws ResourceNotFoundException {
+        Specification<Cat> byId = (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("id"), id);
+        return catRepo.findTuples(byId, columns, Sort.unsorted(), 0, 1)
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException("Cat not found"));
+    }
+
+    private static List<String> checkFields(List<String> fields) {
+        if (fields == null)
+            throw new IllegalArgumentException("Field set is required");
+        for (String field : fields)
+            if (!CAT_FIELDS.contains(field))
+                throw new IllegalArgumentException("Unknown cat field: " + field);
+        return fields;
+    }
+
+    // id is always selected; friends live in another table and are read by a separate query only when requested
+    private static Set<String> columnsOf(List<String> fields, String... extra) {
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add("id");
+        fields.stream()
+                .filter(field -> !field.equals("friends"))
+                .forEach(columns::add);
+        columns.addAll(List.of(extra));
+        return columns;
+    }
+
+    private List<Map<String, Object>> toRows(List<Tuple> cats, List<String> fields) {
+        Map<Long, List<Long>> friends = new HashMap<>();
+        if (fields.contains("friends") && !cats.isEmpty())
+            catRepo.findFriendshipsByCatIdIn(cats.stream()
+                            .map(cat -> cat.get("id", Long.class))
+                            .toList())
+                    .forEach(friendship -> friends.computeIfAbsent(friendship.getCatId(), ignored -> new ArrayList<>())
+                            .add(friendship.getFriendId()));
+
+        List<Map<String, Object>> rows = new ArrayList<>(cats.size());
+        for (Tuple cat : cats) {
+            Long id = cat.get("id", Long.class);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", id);
+            for (String field : CAT_FIELDS) {
+                if (field.equals("id") || !fields.contains(field))
+                    continue;
+                row.put(field, field.equals("friends")
+                        ? friends.getOrDefault(id, List.of())
+                        : cat.get(field));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static PageCursor checkCursor(String sort, String after, int size) {
+        if (!CURSOR_SORTS.contains(sort))
+            throw new IllegalArgumentException("Unsupported sort: " + sort);
+        if (size < 1)
+            throw new IllegalArgumentException("Page size must be positive");
+        PageCursor cursor = after == null || after.isEmpty() ? null : PageCursor.decode(after);
+        if (cursor != null && !cursor.sort().equals(sort))
+            throw new IllegalArgumentException("Cursor was issued for sort " + cursor.sort());
+        // checked here, the specifications parse it again inside the repository call
+        if (cursor != null && sort.equals("birthday") && cursor.key() != null)
+            birthdayKey(cursor);
+        return cursor;
+    }
+
+    private static LocalDate birthdayKey(PageCursor cursor) {
+        try {
+            return LocalDate.parse(cursor.key());
+        } catch (DateTimeParseException exception) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    @FunctionalInterface
+    private interface PageQuery<R> {
+        List<R> find(Specification<Cat> spec, Sort sort, int limit);
+    }
+
+    private static <R> List<R> seek(Specification<Cat> spec, String sort, PageCursor cursor, int size, PageQuery<R> query) {
+        List<R> cats = new ArrayList<>();
+        if (sort.equals("id")) {
+            cats.addAll(query.find(spec.and(idAfter(cursor)), Sort.by("id"), size));
+        } else {
+            // rows with a null sort key come last and are paged by id alone
+            if (cursor == null || cursor.key() != null)
+                cats.addAll(query.find(spec.and(keyAfter(sort, cursor)), Sort.by(sort, "id"), size));
+            if (cats.size() < size)
+                cats.addAll(query.find(spec.and(nullKeyAfter(sort, cursor)), Sort.by("id"), size - cats.size()));
+        }
+        return cats;
+    }
+
+    private List<Cat> findPage(Specification<Cat> spec, Sort sort, int limit) {
+        return catRepo.findBy(spec, query -> query.sortBy(sort).limit(limit).all());
+    }
+
+    private static PageCursor cursorOf(String sort, Cat cat) {
+        Object key = switch (sort) {
+            case "name" -> cat.getName();
+            case "birthday" -> cat.getBirthday();
+            default -> null;
+        };
+        return new PageCursor(sort, key == null ? null : key.toString(), cat.getId());
+    }
+
+    private static PageCursor cursorOf(String sort, Tuple cat) {
+        Object key = sort.equals("id") ? null : cat.get(sort);
+        return new PageCursor(sort, key == null ? null : key.toString(), cat.get("id", Long.class));
+    }
+
+    private static Specification<Cat> idAfter(PageCursor cursor) {
+        return (root, query, criteriaBuilder) -> cursor == null
+                ? criteriaBuilder.conjunction()
+                : criteriaBuilder.greaterThan(root.get("id"), cursor.id());
+    }
+
+    private static Specification<Cat> keyAfter(String sort, PageCursor cursor) {
+        return (root, query, criteriaBuilder) -> switch (sort) {
+            case "name" -> keyAfter(criteriaBuilder, root, root.get("name"),
+                    cursor == null ? null : cursor.key(), cursor);
+            case "birthday" -> keyAfter(criteriaBuilder, root, root.get("birthday"),
+                    cursor == null ? null : birthdayKey(cursor), cursor);
+            default -> throw new IllegalArgumentException("Unsupported sort: " + sort);
+        };
+    }
+
+    // (key, id) > (lastKey, lastId), spelled so that an index on (key, id) gives a range scan
+    private static <Y extends Comparable<? super Y>> Predicate keyAfter(CriteriaBuilder criteriaBuilder,
+                                                                        Root<Cat> root,
+                                                                        Expression<Y> key,
+                                                                        Y lastKey,
+                                                                        PageCursor cursor) {
+        if (cursor == null)
+            return criteriaBuilder.isNotNull(key);
+        return criteriaBuilder.and(
+                criteriaBuilder.greaterThanOrEqualTo(key, lastKey),
+                criteriaBuilder.or(
+                        criteriaBuilder.greaterThan(key, lastKey),
+                        criteriaBuilder.greaterThan(root.get("id"), cursor.id())));
+    }
+
+    private static Specification<Cat> nullKeyAfter(String sort, PageCursor cursor) {
+        return (root, query, criteriaBuilder) -> {
+            Predicate nullKey = criteriaBuilder.isNull(root.get(sort));
+            if (cursor == null || cursor.key() != null)
+                return nullKey;
+            return criteriaBuilder.and(nullKey, criteriaBuilder.greaterThan(root.get("id"), cursor.id()));
+        };
+    }
+
+    static Specification<Cat> buildSpecification(CatFilter filter) {
         return (root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
 
@@ -167,6 +625,7 @@ public class CatServiceImpl implements CatService {
         };
     }
 
+    @Transactional(readOnly = true)
     @Override
     public List<CatDto> getCatsByOwnerId(long ownerId) {
         List<Cat> cats = catRepo.findByOwnerId(ownerId);
@@ -175,6 +634,17 @@ public class CatServiceImpl implements CatService {
                 .toList();
     }
 
+    @Override
+    public Map<Long, List<Long>> getCatIdsByOwnerIds(List<Long> ownerIds) {
+        Map<Long, List<Long>> catIds = new LinkedHashMap<>();
+        ownerIds.forEach(ownerId -> catIds.put(ownerId, new ArrayList<>()));
+        if (catIds.isEmpty())
+            return catIds;
+        catRepo.findOwnershipsByOwnerIdIn(catIds.keySet())
+                .forEach(ownership -> catIds.get(ownership.getOwnerId()).add(ownership.getId()));
+        return catIds;
+    }
+
     @Override
     public void setOwnerToCat(long catId, long ownerId) throws ResourceNotFoundException {
         Cat cat = catRepo.findById(catId)
@@ -191,11 +661,28 @@ public class CatServiceImpl implements CatService {
         catRepo.save(cat);
     }
 
+    // Another owner's cat is never taken over; two owners adopting the same cat at once are told apart by @Version
+    @Transactional
+    @Override
+    public void setOwnerToCatIfUnowned(long ownerId, long catId) throws ResourceNotFoundException, ForbiddenException {
+        Cat cat = catRepo.findById(catId)
+                .orElseThrow(() -> new ResourceNotFoundException("Cat not found"));
+        if (cat.getOwnerId() != null && !Objects.equals(cat.getOwnerId(), ownerId))
+            throw new ForbiddenException("Cat is owned by another owner");
+        cat.setOwnerId(ownerId);
+    }
+
+    @Transactional
+    @Override
+    public void unsetOwnerFromCatIfOwned(long ownerId, long catId) throws ResourceNotFoundException, ForbiddenException {
+        findOwnedCat(ownerId, catId).setOwnerId(null);
+    }
+
     @Override
     public boolean ownerOwnsCat(long ownerId, long catId) throws ResourceNotFoundException {
         Cat cat = catRepo.findById(catId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cat not found"));
-        return cat.getOwnerId().equals(ownerId);
+        return Objects.equals(cat.getOwnerId(), ownerId);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.mikkkkkkka.cat.service;
+
+import com.mikkkkkkka.common.exception.ForbiddenException;
+import com.mikkkkkkka.common.exception.ResourceNotFoundException;
+import com.mikkkkkkka.common.model.dto.CatDistance;
+import com.mikkkkkkka.common.model.dto.FriendComponent;
+
+import java.util.List;
+
+// Traversals of the in-memory friend graph. A non-null ownerId restricts the queries to cats of that owner.
+public interface FriendGraphService {
+
+    List<Long> getMutualFriends(Long ownerId, long catId, long otherId) throws ResourceNotFoundException, ForbiddenException;
+
+    List<CatDistance> getFriendsWithin(Long ownerId, long catId, int depth, int limit) throws ResourceNotFoundException, ForbiddenException;
+
+    List<Long> getFriendshipPath(Long ownerId, long fromId, long toId) throws ResourceNotFoundException, ForbiddenException;
+
+    FriendComponent getFriendComponent(Long ownerId, long catId, int limit) throws ResourceNotFoundException, ForbiddenException;
+}
@@ -0,0 +1,83 @@
+package com.mikkkkkkka.cat.service;
+
+import com.mikkkkkkka.cat.dao.CatRepository;
+import com.mikkkkkkka.cat.graph.FriendGraph;
+import com.mikkkkkkka.common.exception.ForbiddenException;
+import com.mikkkkkkka.common.exception.ResourceNotFoundException;
+import com.mikkkkkkka.common.model.dto.CatDistance;
+import com.mikkkkkkka.common.model.dto.FriendComponent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Service
+public class FriendGraphServiceImpl implements FriendGraphService {
+
+    private static final int MAX_DEPTH = 6;
+    private static final int MAX_LIMIT = 1000;
+
+    private final FriendGraph graph;
+    private final CatRepository catRepo;
+
+    @Autowired
+    public FriendGraphServiceImpl(FriendGraph graph, CatRepository catRepo) {
+        this.graph = graph;
+        this.catRepo = catRepo;
+    }
+
+    @Override
+    public List<Long> getMutualFriends(Long ownerId, long catId, long otherId) throws ResourceNotFoundException, ForbiddenException {
+        checkCat(ownerId, catId, "Cat-1 not found");
+        checkCat(null, otherId, "Cat-2 not found");
+        return asList(graph.mutualFriends(catId, otherId));
+    }
+
+    @Override
+    public List<CatDistance> getFriendsWithin(Long ownerId, long catId, int depth, int limit) throws ResourceNotFoundException, ForbiddenException {
+        if (depth < 1 || depth > MAX_DEPTH)
+            throw new IllegalArgumentException("Depth must be between 1 and " + MAX_DEPTH);
+        checkLimit(limit);
+        checkCat(ownerId, catId, "Cat not found");
+        return graph.friendsWithin(catId, depth, limit);
+    }
+
+    @Override
+    public List<Long> getFriendshipPath(Long ownerId, long fromId, long toId) throws ResourceNotFoundException, ForbiddenException {
+        checkCat(ownerId, fromId, "Cat-1 not found");
+        checkCat(null, toId, "Cat-2 not found");
+        return asList(graph.shortestPath(fromId, toId));
+    }
+
+    @Override
+    public FriendComponent getFriendComponent(Long ownerId, long catId, int limit) throws ResourceNotFoundException, ForbiddenException {
+        checkLimit(limit);
+        checkCat(ownerId, catId, "Cat not found");
+        return graph.component(catId, limit);
+    }
+
+    // Cats with friends are known to exist; only the others, and ownership, cost a lookup
+    private void checkCat(Long ownerId, long catId, String notFound) throws ResourceNotFoundException, ForbiddenException {
+        if (ownerId != null) {
+            if (catRepo.findVersionByIdAndOwnerId(catId, ownerId).isPresent())
+                return;
+            if (catRepo.existsById(catId))
+                throw new ForbiddenException("Cat is not owned by the owner");
+            throw new ResourceNotFoundException(notFound);
+        }
+        if (!graph.hasFriends(catId) && !catRepo.existsById(catId))
+            throw new ResourceNotFoundException(notFound);
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT)
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+    }
+
+    private static List<Long> asList(long[] ids) {
+        return Arrays.stream(ids)
+                .boxed()
+                .toList();
+    }
+}
@@ -0,0 +1,19 @@
+-- The schema ddl-auto=update created before migrations were introduced; existing databases are baselined at this version
+create table service.cats (
+    id       bigint generated by default as identity,
+    name     varchar(255),
+    birthday date,
+    breed    varchar(255),
+    color    varchar(255) check (color in ('WHITE', 'BLACK', 'GRAY', 'ORANGE', 'TUXEDO', 'MIX')),
+    owner_id bigint,
+    primary key (id)
+);
+
+create table service.friendships (
+    friender_id bigint not null,
+    friendee_id bigint not null
+);
+
+alter table service.friendships
+    add foreign key (friender_id) references service.cats,
+    add foreign key (friendee_id) references service.cats;
@@ -0,0 +1,52 @@
+-- Keyset pages by name and birthday. Databases that ran ddl-auto after keyset pagination came in already have them.
+create index if not exists cats_name_id_idx on service.cats (name, id);
+create index if not exists cats_birthday_id_idx on service.cats (birthday, id);
+
+-- Cats of an owner (findByOwnerId, owner filter, cat ids for owner listings), in id order
+create index cats_owner_id_id_idx on service.cats (owner_id, id);
+
+-- Color filter, optionally narrowed by a birthday range
+create index cats_color_birthday_idx on service.cats (color, birthday);
+
+-- A friend list is a set of ids: drop the duplicates the old many-to-many mapping allowed, and the rows that a
+-- later ddl-auto schema left without a friendee or pointing at cats that no longer exist
+delete from service.friendships
+where friendee_id is null
+   or friendee_id not in (select id from service.cats);
+
+delete from service.friendships a
+    using service.friendships b
+where a.ctid < b.ctid
+  and a.friender_id = b.friender_id
+  and a.friendee_id = b.friendee_id;
+
+alter table service.friendships
+    alter column friendee_id set not null;
+
+-- The key serves friend lists by friender, the index the reverse lookup when a cat is deleted
+alter table service.friendships
+    add constraint friendships_pkey primary key (friender_id, friendee_id);
+
+create index friendships_friendee_id_friender_id_idx on service.friendships (friendee_id, friender_id);
+
+-- Foreign keys carried generated names under ddl-auto, and some schemas lost the one on friendee_id;
+-- replace them with named ones on both columns
+do
+$$
+    declare
+        constraint_name text;
+    begin
+        for constraint_name in
+            select conname
+            from pg_constraint
+            where conrelid = 'service.friendships'::regclass
+              and contype = 'f'
+            loop
+                execute format('alter table service.friendships drop constraint %I', constraint_name);
+            end loop;
+    end
+$$;
+
+alter table service.friendships
+    add constraint friendships_friender_id_fkey foreign key (friender_id) references service.cats,
+    add constraint friendships_friendee_id_fkey foreign key (friendee_id) references service.cats;
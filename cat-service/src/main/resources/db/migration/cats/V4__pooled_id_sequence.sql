@@ -0,0 +1,10 @@
+-- Ids come from a sequence handed out in blocks of 50, so batched inserts need no round trip per row.
+-- Rows inserted while ids were IDENTITY-generated are ahead of it; start past them, leaving room for one block.
+create sequence if not exists service.cats_seq start with 1 increment by 50;
+
+select setval('service.cats_seq', max(id) + 50)
+from service.cats
+having max(id) > (select last_value from service.cats_seq);
+
+alter table service.cats
+    alter column id drop identity if exists;
@@ -0,0 +1,173 @@
+package com.mikkkkkkka.cat;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.mikkkkkkka.cat.service.CatMessageListener;
+import com.mikkkkkkka.cat.service.CatService;
+import com.mikkkkkkka.common.model.CatColor;
+import com.mikkkkkkka.common.model.dto.ApiResponse;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
+import com.mikkkkkkka.common.model.dto.CatDto;
+import com.mikkkkkkka.common.model.dto.CursorPage;
+import com.mikkkkkkka.common.model.pagination.PageCursor;
+import com.mikkkkkkka.common.rpc.codec.RpcCodec;
+import com.mikkkkkkka.common.rpc.codec.RpcCodecs;
+import com.mikkkkkkka.common.rpc.request.CatBatchRequest;
+import com.mikkkkkkka.common.rpc.request.CatListRequest;
+import com.mikkkkkkka.common.rpc.request.GraphRequest;
+import com.mikkkkkkka.common.rpc.request.OwnedCatRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Calls the cat service's RPC listener directly on a real PostgreSQL. No broker is needed: the listener containers
+// are not started, the messages are handed to the listener in the test thread.
+@DisabledIfSystemProperty(named = "user.name", matches = "root", disabledReason = "initdb refuses to run as root")
+class CatMessageListenerTest {
+
+    private static final TypeReference<ApiResponse<CursorPage<CatDto>>> CAT_PAGE = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<String>> STATUS = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<List<BatchItemResult<CatDto>>>> CAT_RESULTS = new TypeReference<>() {
+    };
+
+    private static EmbeddedDatabase database;
+    private static ConfigurableApplicationContext context;
+    private static CatService catService;
+    private static CatMessageListener listener;
+    private static RpcCodec codec;
+
+    @BeforeAll
+    static void start() throws Exception {
+        database = new EmbeddedDatabase();
+        context = new SpringApplicationBuilder(CatServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + database.createDatabase("catdb"),
+                        "--spring.datasource.username=" + EmbeddedDatabase.USER,
+                        "--spring.datasource.password=",
+                        "--spring.rabbitmq.listener.simple.auto-startup=false",
+                        "--spring.jpa.show-sql=false",
+                        "--management.tracing.sampling.probability=0.0");
+        catService = context.getBean(CatService.class);
+        listener = context.getBean(CatMessageListener.class);
+        codec = context.getBean(RpcCodecs.class).json();
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (context != null)
+            context.close();
+        if (database != null)
+            database.close();
+    }
+
+    @Test
+    void sortedListingLoadsFriends() throws Exception {
+        CatDto tom = catService.createCat(cat("Tom"));
+        CatDto felix = catService.createCat(cat("Felix"));
+        catService.befriendCats(tom.id(), felix.id());
+
+        ApiResponse<CursorPage<CatDto>> response = call("GET_ALL_CATS",
+                new CatListRequest(null, 0, 10, "id", null), CAT_PAGE);
+
+        assertEquals(200, response.status(), response.message());
+        Map<Long, CatDto> cats = response.data().items().stream()
+                .collect(Collectors.toMap(CatDto::id, Function.identity()));
+        assertEquals(List.of(felix.id()), cats.get(tom.id()).friends());
+        assertEquals(List.of(tom.id()), cats.get(felix.id()).friends());
+    }
+
+    @Test
+    void ownerAdoptsOnlyUnownedOrOwnCats() throws Exception {
+        CatDto stray = catService.createCat(cat("Stray"));
+
+        assertEquals(200, call("SET_OWNER_TO_CAT_IF_UNOWNED", new OwnedCatRequest(1L, stray.id()), STATUS).status());
+        assertEquals(200, call("SET_OWNER_TO_CAT_IF_UNOWNED", new OwnedCatRequest(1L, stray.id()), STATUS).status());
+        assertEquals(403, call("SET_OWNER_TO_CAT_IF_UNOWNED", new OwnedCatRequest(2L, stray.id()), STATUS).status());
+        assertEquals(1L, catService.getCat(stray.id()).ownerId());
+    }
+
+    @Test
+    void ownerReleasesOnlyOwnCats() throws Exception {
+        CatDto owned = catService.createCat(cat("Owned"));
+        catService.setOwnerToCat(owned.id(), 1L);
+
+        assertEquals(403, call("UNSET_OWNER_FROM_CAT_IF_OWNED", new OwnedCatRequest(2L, owned.id()), STATUS).status());
+        assertEquals(1L, catService.getCat(owned.id()).ownerId());
+        assertEquals(200, call("UNSET_OWNER_FROM_CAT_IF_OWNED", new OwnedCatRequest(1L, owned.id()), STATUS).status());
+        assertNull(catService.getCat(owned.id()).ownerId());
+    }
+
+    @Test
+    void brokenRuleIsReportedByName() {
+        ApiResponse<String> response = call("GET_FRIENDS_WITHIN", new GraphRequest(null, 1, null, 1000, 10), STATUS);
+
+        assertEquals(400, response.status());
+        assertTrue(response.message().startsWith("Depth must be between 1 and"), response.message());
+    }
+
+    @Test
+    void unparsableCursorKeyIsBadRequest() {
+        String after = new PageCursor("birthday", "not-a-date", 1).encode();
+
+        ApiResponse<String> response = call("GET_ALL_CATS", new CatListRequest(null, 0, 10, "birthday", after), STATUS);
+
+        assertEquals(400, response.status());
+        assertEquals("Invalid cursor", response.message());
+    }
+
+    @Test
+    void badItemsDoNotFailTheRestOfTheBatch() throws Exception {
+        CatDto withId = new CatDto(1L, "With id", LocalDate.of(2020, 1, 1), "Siberian", CatColor.GRAY, null, null, null);
+        CatDto longName = cat("x".repeat(256));
+        List<CatDto> cats = Arrays.asList(cat("First"), withId, null, longName, cat("Last"));
+
+        ApiResponse<List<BatchItemResult<CatDto>>> response = call("CREATE_CATS", new CatBatchRequest(cats), CAT_RESULTS);
+
+        List<Integer> statuses = response.data().stream().map(BatchItemResult::status).toList();
+        assertEquals(List.of(200, 400, 400, 400, 200), statuses);
+        assertEquals("Last", catService.getCat(response.data().get(4).data().id()).name());
+    }
+
+    @Test
+    void undecodableBodyIsInvalidPayload() {
+        Message message = MessageBuilder.withBody("{\"depth\": \"deep\"}".getBytes(StandardCharsets.UTF_8))
+                .setContentType(codec.contentType())
+                .setHeader("action", "GET_FRIENDS_WITHIN")
+                .build();
+        ApiResponse<String> response = codec.decode(listener.handleMessage(message).getBody(), STATUS);
+
+        assertEquals(400, response.status());
+        assertEquals("Invalid payload", response.message());
+    }
+
+    private static CatDto cat(String name) {
+        return new CatDto(null, name, LocalDate.of(2020, 1, 1), "Siberian", CatColor.GRAY, null, null, null);
+    }
+
+    private static <T> T call(String action, Object request, TypeReference<T> type) {
+        Message message = MessageBuilder.withBody(codec.encode(request))
+                .setContentType(codec.contentType())
+                .setHeader("action", action)
+                .build();
+        return codec.decode(listener.handleMessage(message).getBody(), type);
+    }
+}
@@ -0,0 +1,147 @@
+package com.mikkkkkkka.cat;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs the cat service's Flyway migrations on a real PostgreSQL, from scratch and over a pre-migration database
+@DisabledIfSystemProperty(named = "user.name", matches = "root", disabledReason = "initdb refuses to run as root")
+class CatSchemaTest {
+
+    private static EmbeddedDatabase database;
+    private static String freshUrl;
+
+    @BeforeAll
+    static void start() throws Exception {
+        database = new EmbeddedDatabase();
+        freshUrl = database.createDatabase("freshcat");
+        migrate(freshUrl);
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (database != null)
+            database.close();
+    }
+
+    @Test
+    void preMigrationDatabaseUpgrades() throws Exception {
+        String url = database.createDatabase("legacycat");
+        // What ddl-auto=update left behind: IDENTITY ids, no version column, generated foreign key names and
+        // friend lists with duplicate rows
+        execute(url,
+                "create schema service",
+                "create table service.cats (birthday date, id bigint generated by default as identity, owner_id bigint, "
+                        + "breed varchar(255), color varchar(255), name varchar(255), primary key (id))",
+                "create table service.friendships (friendee_id bigint not null, friender_id bigint not null)",
+                "alter table service.friendships add constraint FK60125kiih3rn4ugokf52519a8 "
+                        + "foreign key (friendee_id) references service.cats",
+                "alter table service.friendships add constraint FKqy632h2ry03i4q9su85mjxkve "
+                        + "foreign key (friender_id) references service.cats",
+                "insert into service.cats (name, color) select 'cat-' || g, 'GRAY' from generate_series(1, 120) g",
+                "insert into service.friendships (friender_id, friendee_id) values (1, 2), (2, 1), (1, 2), (2, 1)");
+
+        migrate(url);
+
+        assertEquals(List.of("1", "2", "3", "4"),
+                query(url, "select version from service.flyway_schema_history order by installed_rank"));
+        assertEquals(List.of("NO"),
+                query(url, "select is_identity from information_schema.columns "
+                        + "where table_schema = 'service' and table_name = 'cats' and column_name = 'id'"));
+        assertEquals(List.of("0"), query(url, "select distinct version from service.cats"));
+        assertEquals(List.of("1->2", "2->1"),
+                query(url, "select friender_id || '->' || friendee_id from service.friendships order by 1"));
+        assertEquals(List.of("friendships_friendee_id_fkey", "friendships_friender_id_fkey", "friendships_pkey"),
+                query(url, "select conname from pg_constraint "
+                        + "where conrelid = 'service.friendships'::regclass order by 1"));
+        // the first block Hibernate takes ends at the next value, past every id the identity handed out
+        long next = Long.parseLong(query(url, "select nextval('service.cats_seq')").get(0));
+        assertTrue(next - 50 >= 120, "sequence hands out ids up to " + next);
+    }
+
+    @Test
+    void ownerLookupsUseTheOwnerIndex() throws Exception {
+        assertUsesIndex("cats_owner_id_id_idx",
+                "select c.id, c.owner_id from service.cats c where c.owner_id in (1, 2, 3) order by c.id");
+    }
+
+    @Test
+    void colorFiltersUseTheColorIndex() throws Exception {
+        assertUsesIndex("cats_color_birthday_idx",
+                "select * from service.cats c where c.color = 'GRAY' and c.birthday >= date '2018-01-01'");
+    }
+
+    @Test
+    void keysetPagesUseTheSortIndexes() throws Exception {
+        assertUsesIndex("cats_name_id_idx",
+                "select * from service.cats c where (c.name, c.id) > ('cat', 0) order by c.name, c.id limit 20");
+        assertUsesIndex("cats_birthday_id_idx",
+                "select * from service.cats c where (c.birthday, c.id) > (date '2018-01-01', 0) "
+                        + "order by c.birthday, c.id limit 20");
+    }
+
+    @Test
+    void friendLookupsUseTheFriendshipIndexes() throws Exception {
+        assertUsesIndex("friendships_pkey",
+                "select friender_id, friendee_id from service.friendships where friender_id in (1, 2, 3)");
+        assertUsesIndex("friendships_friendee_id_friender_id_idx",
+                "select friender_id from service.friendships where friendee_id = 42");
+    }
+
+    // The tables are nearly empty, so sequential scans are switched off: the plan then shows whether an index
+    // can serve the query at all, which is what a missing or mis-ordered index breaks
+    private static void assertUsesIndex(String index, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(freshUrl, EmbeddedDatabase.USER, "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("set enable_seqscan = off");
+            List<String> plan = lines(statement.executeQuery("explain " + sql));
+            assertTrue(plan.stream().anyMatch(line -> line.contains(index)), String.join("\n", plan));
+        }
+    }
+
+    private static void migrate(String url) {
+        Flyway.configure()
+                .dataSource(url, EmbeddedDatabase.USER, "")
+                .schemas("service")
+                .locations("classpath:db/migration/cats")
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+    }
+
+    private static void execute(String url, String... statements) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, EmbeddedDatabase.USER, "");
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements)
+                statement.execute(sql);
+        }
+    }
+
+    private static List<String> query(String url, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, EmbeddedDatabase.USER, "");
+             Statement statement = connection.createStatement()) {
+            return lines(statement.executeQuery(sql));
+        }
+    }
+
+    private static List<String> lines(ResultSet resultSet) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        while (resultSet.next())
+            lines.add(resultSet.getString(1));
+        return lines;
+    }
+}
@@ -0,0 +1,34 @@
+package com.mikkkkkkka.cat;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// A real PostgreSQL server unpacked from the zonky binaries into a temporary directory.
+// initdb refuses to run as root, so the tests using it are skipped for root.
+final class EmbeddedDatabase implements AutoCloseable {
+
+    static final String USER = "postgres";
+
+    private final EmbeddedPostgres postgres;
+
+    EmbeddedDatabase() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+    }
+
+    String createDatabase(String name) throws SQLException {
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("create database " + name);
+        }
+        return postgres.getJdbcUrl(USER, name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        postgres.close();
+    }
+}
@@ -0,0 +1,166 @@
+package com.mikkkkkkka.cat.graph;
+
+import com.mikkkkkkka.common.model.dto.CatDistance;
+import com.mikkkkkkka.common.model.dto.FriendComponent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs random updates against the graph and a plain adjacency-set model, then compares every query with the model.
+// Enough cats get their first friend to overflow the extra vertices, so snapshots are rebuilt along the way, and
+// some updates land between beginLoad and load, where they have to be replayed on top of the loaded rows.
+class FriendGraphTest {
+
+    private static final int CAT_COUNT = 3000;
+    private static final int STEPS = 20_000;
+
+    @Test
+    void matchesNaiveModel() {
+        for (long seed = 1; seed <= 3; seed++)
+            check(new Random(seed), "seed " + seed);
+    }
+
+    private static void check(Random random, String run) {
+        FriendGraph graph = new FriendGraph();
+        Map<Long, TreeSet<Long>> model = new TreeMap<>();
+        for (int step = 0; step < STEPS; step++) {
+            // reloads are rare enough for the overrides and extra cats between two of them to force a compaction
+            int operation = random.nextInt(4000);
+            if (operation == 0) {
+                // a reload: updates that race with the select must survive it
+                graph.beginLoad();
+                long[][] rows = rows(model);
+                for (int k = random.nextInt(20); k > 0; k--)
+                    update(random, graph, model);
+                graph.load(rows[0], rows[1], rows[0].length);
+            } else if (operation == 1) {
+                graph.beginLoad();
+                update(random, graph, model);
+                graph.abortLoad();
+            } else {
+                update(random, graph, model);
+            }
+            if (step % 500 == 0)
+                compare(random, graph, model, run + ", step " + step);
+        }
+        compare(random, graph, model, run + ", end");
+    }
+
+    private static void update(Random random, FriendGraph graph, Map<Long, TreeSet<Long>> model) {
+        long cat1 = randomCat(random);
+        long cat2 = randomCat(random);
+        int operation = random.nextInt(10);
+        if (operation < 6) {
+            graph.addFriendship(cat1, cat2);
+            friends(model, cat1).add(cat2);
+            friends(model, cat2).add(cat1);
+        } else if (operation < 9) {
+            graph.removeFriendship(cat1, cat2);
+            friends(model, cat1).remove(cat2);
+            friends(model, cat2).remove(cat1);
+        } else {
+            graph.removeCat(cat1);
+            for (long friend : friends(model, cat1))
+                if (friend != cat1)
+                    friends(model, friend).remove(cat1);
+            friends(model, cat1).clear();
+        }
+    }
+
+    private static void compare(Random random, FriendGraph graph, Map<Long, TreeSet<Long>> model, String at) {
+        for (int k = 0; k < 50; k++) {
+            long cat1 = randomCat(random);
+            long cat2 = randomCat(random);
+            int depth = 1 + random.nextInt(3);
+            int limit = 1 + random.nextInt(200);
+            Map<Long, Integer> distances = distances(model, cat1);
+
+            assertEquals(!friends(model, cat1).isEmpty(), graph.hasFriends(cat1), at);
+            assertArrayEquals(mutualFriends(model, cat1, cat2), graph.mutualFriends(cat1, cat2), at);
+            assertEquals(friendsWithin(distances, depth, limit), graph.friendsWithin(cat1, depth, limit), at);
+            assertEquals(component(distances, limit), graph.component(cat1, limit), at);
+            checkPath(model, distances, cat1, cat2, graph.shortestPath(cat1, cat2), at);
+        }
+    }
+
+    // Rows of service.friendships: both directions of every friendship, ordered by both columns
+    private static long[][] rows(Map<Long, TreeSet<Long>> model) {
+        List<long[]> rows = new ArrayList<>();
+        model.forEach((cat, friends) -> friends.forEach(friend -> rows.add(new long[]{cat, friend})));
+        long[][] columns = new long[2][rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            columns[0][i] = rows.get(i)[0];
+            columns[1][i] = rows.get(i)[1];
+        }
+        return columns;
+    }
+
+    private static long[] mutualFriends(Map<Long, TreeSet<Long>> model, long cat1, long cat2) {
+        TreeSet<Long> mutual = new TreeSet<>(friends(model, cat1));
+        mutual.retainAll(friends(model, cat2));
+        mutual.remove(cat1);
+        mutual.remove(cat2);
+        return mutual.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static List<CatDistance> friendsWithin(Map<Long, Integer> depths, int maxDepth, int limit) {
+        List<CatDistance> result = new ArrayList<>();
+        for (int depth = 1; depth <= maxDepth; depth++)
+            for (Map.Entry<Long, Integer> entry : depths.entrySet())
+                if (entry.getValue() == depth && result.size() < limit)
+                    result.add(new CatDistance(entry.getKey(), depth));
+        return result;
+    }
+
+    private static FriendComponent component(Map<Long, Integer> depths, int limit) {
+        List<Long> members = new ArrayList<>(depths.keySet());
+        return new FriendComponent(members.get(0), members.size(), members.subList(0, Math.min(limit, members.size())));
+    }
+
+    private static void checkPath(Map<Long, TreeSet<Long>> model, Map<Long, Integer> depths,
+                                  long from, long to, long[] path, String at) {
+        Integer distance = depths.get(to);
+        if (distance == null) {
+            assertEquals(0, path.length, at);
+            return;
+        }
+        assertEquals(distance + 1, path.length, at);
+        assertEquals(from, path[0], at);
+        assertEquals(to, path[path.length - 1], at);
+        for (int k = 1; k < path.length; k++)
+            assertTrue(friends(model, path[k - 1]).contains(path[k]), at);
+    }
+
+    // Breadth-first distances from a cat to everything it reaches, itself included, ordered by id
+    private static Map<Long, Integer> distances(Map<Long, TreeSet<Long>> model, long cat) {
+        Map<Long, Integer> depths = new HashMap<>();
+        depths.put(cat, 0);
+        ArrayDeque<Long> queue = new ArrayDeque<>(List.of(cat));
+        while (!queue.isEmpty()) {
+            long current = queue.poll();
+            for (long friend : friends(model, current))
+                if (depths.putIfAbsent(friend, depths.get(current) + 1) == null)
+                    queue.add(friend);
+        }
+        return new TreeMap<>(depths);
+    }
+
+    private static TreeSet<Long> friends(Map<Long, TreeSet<Long>> model, long cat) {
+        return model.computeIfAbsent(cat, id -> new TreeSet<>());
+    }
+
+    private static long randomCat(Random random) {
+        return 1 + random.nextInt(CAT_COUNT);
+    }
+}
@@ -0,0 +1,7 @@
+package com.mikkkkkkka.common.exception;
+
+public class VersionMismatchException extends RuntimeException {
+    public VersionMismatchException(String message) {
+        super(message);
+    }
+}
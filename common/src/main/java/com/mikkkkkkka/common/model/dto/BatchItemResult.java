@@ -0,0 +1,16 @@
+package com.mikkkkkkka.common.model.dto;
+
+public record BatchItemResult<T>(
+        int index,
+        int status,
+        String message,
+        T data
+) {
+    public static <T> BatchItemResult<T> ok(int index, T data) {
+        return new BatchItemResult<>(index, 200, null, data);
+    }
+
+    public static <T> BatchItemResult<T> error(int index, int status, String message) {
+        return new BatchItemResult<>(index, status, message, null);
+    }
+}
@@ -0,0 +1,7 @@
+package com.mikkkkkkka.common.model.dto;
+
+public record CatDistance(
+        long id,
+        int depth
+) {
+}
@@ -14,6 +14,7 @@ public record CatDto(
         String breed,
         CatColor color,
         Long ownerId,
-        List<Long> friends
+        List<Long> friends,
+        Long version
 ) {
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.mikkkkkkka.common.model.dto;
+
+import java.util.List;
+
+public record CursorPage<T>(
+        List<T> items,
+        String next
+) {
+}
@@ -0,0 +1,10 @@
+package com.mikkkkkkka.common.model.dto;
+
+import java.util.List;
+
+public record FriendComponent(
+        long id,
+        int size,
+        List<Long> cats
+) {
+}
@@ -8,6 +8,7 @@ import java.time.LocalDate;
 public record OwnerDto(
         Long id,
         String name,
-        LocalDate birthday
+        LocalDate birthday,
+        Long version
 ) {
 }
@@ -1,18 +1,21 @@
 package com.mikkkkkkka.common.model.dto;
 
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
 
 public record OwnerDtoWithCats(
         Long id,
         String name,
         LocalDate birthday,
-        List<Number> cats
+        List<Number> cats,
+        Long version
 ) {
-    public OwnerDtoWithCats(OwnerDto ownerNoCats, List<Number> cats) {
+    public OwnerDtoWithCats(OwnerDto ownerNoCats, List<? extends Number> cats) {
         this(ownerNoCats.id(),
                 ownerNoCats.name(),
                 ownerNoCats.birthday(),
-                cats);
+                Collections.unmodifiableList(cats),
+                ownerNoCats.version());
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.mikkkkkkka.common.model.dto;
+
+import java.time.Instant;
+
+public record TokenDto(
+        String token,
+        Instant expiresAt
+) {
+}
@@ -9,6 +9,7 @@ public record CatFilter(
         Long ownerId,
         List<CatColor> colors,
         LocalDate birthdateAfter,
-        LocalDate birthdateBefore
+        LocalDate birthdateBefore,
+        List<String> fields
 ) {
 }
\ No newline at end of file
@@ -1,9 +1,11 @@
 package com.mikkkkkkka.common.model.filter;
 
 import java.time.LocalDate;
+import java.util.List;
 
 public record OwnerFilter(
         LocalDate birthdayAfter,
-        LocalDate birthdayBefore
+        LocalDate birthdayBefore,
+        List<String> fields
 ) {
 }
\ No newline at end of file
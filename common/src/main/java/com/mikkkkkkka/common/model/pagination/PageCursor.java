@@ -0,0 +1,29 @@
+package com.mikkkkkkka.common.model.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public record PageCursor(
+        String sort,
+        String key,
+        long id
+) {
+    private static final String NULL_KEY = "-";
+    private static final String KEY_PREFIX = "=";
+
+    public String encode() {
+        String raw = sort + ":" + id + ":" + (key == null ? NULL_KEY : KEY_PREFIX + key);
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = raw.split(":", 3);
+        if (parts.length != 3 || !(parts[2].equals(NULL_KEY) || parts[2].startsWith(KEY_PREFIX)))
+            throw new IllegalArgumentException("Malformed page cursor");
+        String key = parts[2].equals(NULL_KEY) ? null : parts[2].substring(KEY_PREFIX.length());
+        return new PageCursor(parts[0], key, Long.parseLong(parts[1]));
+    }
+}
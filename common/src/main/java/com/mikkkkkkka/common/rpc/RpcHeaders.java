@@ -0,0 +1,19 @@
+package com.mikkkkkkka.common.rpc;
+
+public final class RpcHeaders {
+
+    // Reply encodings the sender can read, see RpcCompression
+    public static final String ACCEPT_ENCODING = "accept-encoding";
+
+    // Passthrough reply mode: the body is the bare DTO in JSON, ready to be sent to the HTTP client,
+    // and everything the gateway has to know about the reply travels in headers.
+    public static final String REPLY_MODE = "reply-mode";
+    public static final String RAW = "raw";
+
+    public static final String STATUS = "status";
+    public static final String MESSAGE = "message";
+    public static final String VERSION = "version";
+
+    private RpcHeaders() {
+    }
+}
@@ -0,0 +1,60 @@
+package com.mikkkkkkka.common.rpc.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class JacksonRpcCodec implements RpcCodec {
+
+    private final String contentType;
+    private final ObjectMapper mapper;
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public JacksonRpcCodec(String contentType, ObjectMapper mapper) {
+        this.contentType = contentType;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        ObjectWriter writer = value == null
+                ? mapper.writer()
+                : writers.computeIfAbsent(value.getClass(), mapper::writerFor);
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] body, Class<T> type) {
+        return read(readers.computeIfAbsent(type, ignored -> mapper.readerFor(type)), body);
+    }
+
+    @Override
+    public <T> T decode(byte[] body, TypeReference<T> type) {
+        return read(readers.computeIfAbsent(type.getType(), ignored -> mapper.readerFor(type)), body);
+    }
+
+    private static <T> T read(ObjectReader reader, byte[] body) {
+        try {
+            return reader.readValue(body);
+        } catch (IOException exception) {
+            throw new MalformedPayloadException("Malformed " + reader.getValueType() + " payload", exception);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.mikkkkkkka.common.rpc.codec;
+
+// A body that does not decode into the request type, as opposed to a decoded request that breaks a rule
+public class MalformedPayloadException extends IllegalArgumentException {
+    public MalformedPayloadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
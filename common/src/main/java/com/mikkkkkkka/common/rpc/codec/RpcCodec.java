@@ -0,0 +1,14 @@
+package com.mikkkkkkka.common.rpc.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+public interface RpcCodec {
+
+    String contentType();
+
+    byte[] encode(Object value);
+
+    <T> T decode(byte[] body, Class<T> type);
+
+    <T> T decode(byte[] body, TypeReference<T> type);
+}
@@ -0,0 +1,49 @@
+package com.mikkkkkkka.common.rpc.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.MapperBuilder;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+public class RpcCodecs {
+
+    public static final String JSON = "application/json";
+    public static final String CBOR = "application/cbor";
+
+    private final RpcCodec json;
+    private final RpcCodec cbor;
+
+    public RpcCodecs() {
+        this.json = new JacksonRpcCodec(JSON, configure(JsonMapper.builder()));
+        this.cbor = new JacksonRpcCodec(CBOR, configure(CBORMapper.builder()));
+    }
+
+    private static <M extends ObjectMapper, B extends MapperBuilder<M, B>> M configure(B builder) {
+        return builder.addModule(new JavaTimeModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    // Messages without a recognised content type come from senders that predate the codecs and are JSON
+    public RpcCodec forContentType(String contentType) {
+        if (contentType != null && contentType.startsWith(CBOR))
+            return cbor;
+        return json;
+    }
+
+    public RpcCodec json() {
+        return json;
+    }
+
+    public RpcCodec byName(String name) {
+        return switch (name) {
+            case "json" -> json;
+            case "cbor" -> cbor;
+            default -> throw new IllegalArgumentException("Unknown RPC codec: " + name);
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package com.mikkkkkkka.common.rpc.compression;
+
+import com.mikkkkkkka.common.rpc.RpcHeaders;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Gzips message bodies of at least `threshold` bytes and marks them with content-encoding.
+// Requests advertise through accept-encoding that their sender reads gzip, replies are compressed only if asked to,
+// so either side can be upgraded first.
+public class RpcCompression {
+
+    public static final String GZIP = "gzip";
+
+    private final int threshold;
+    private final Timer compressTime;
+    private final Timer decompressTime;
+    private final DistributionSummary ratio;
+    private final Counter originalBytes;
+    private final Counter compressedBytes;
+    private final Counter skipped;
+
+    public RpcCompression(int threshold, MeterRegistry meterRegistry) {
+        this.threshold = threshold;
+        this.compressTime = Timer.builder("rpc.compression.time")
+                .tag("operation", "compress")
+                .register(meterRegistry);
+        this.decompressTime = Timer.builder("rpc.compression.time")
+                .tag("operation", "decompress")
+                .register(meterRegistry);
+        this.ratio = DistributionSummary.builder("rpc.compression.ratio")
+                .description("Compressed size divided by original size")
+                .register(meterRegistry);
+        this.originalBytes = Counter.builder("rpc.compression.bytes")
+                .tag("stage", "original")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.compressedBytes = Counter.builder("rpc.compression.bytes")
+                .tag("stage", "compressed")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("rpc.compression.skipped")
+                .description("Bodies above the threshold that did not shrink")
+                .register(meterRegistry);
+    }
+
+    public Message compressRequest(Message request) {
+        request.getMessageProperties().setHeader(RpcHeaders.ACCEPT_ENCODING, GZIP);
+        return compress(request);
+    }
+
+    public Message compressReply(Message request, Message reply) {
+        if (!GZIP.equals(request.getMessageProperties().getHeader(RpcHeaders.ACCEPT_ENCODING)))
+            return reply;
+        return compress(reply);
+    }
+
+    public Message decompress(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        if (!GZIP.equals(properties.getContentEncoding()))
+            return message;
+        long start = System.nanoTime();
+        byte[] body;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(message.getBody()))) {
+            body = in.readAllBytes();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Corrupt gzip message body", exception);
+        }
+        decompressTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        properties.setContentEncoding(null);
+        properties.setContentLength(body.length);
+        return new Message(body, properties);
+    }
+
+    private Message compress(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        byte[] body = message.getBody();
+        if (body.length < threshold || properties.getContentEncoding() != null)
+            return message;
+
+        long start = System.nanoTime();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(body);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        byte[] compressed = buffer.toByteArray();
+        compressTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (compressed.length >= body.length) {
+            skipped.increment();
+            return message;
+        }
+        originalBytes.increment(body.length);
+        compressedBytes.increment(compressed.length);
+        ratio.record((double) compressed.length / body.length);
+        properties.setContentEncoding(GZIP);
+        properties.setContentLength(compressed.length);
+        return new Message(compressed, properties);
+    }
+}
@@ -0,0 +1,128 @@
+package com.mikkkkkkka.common.rpc.listener;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Resizes the listener containers of each pool every `interval`.
+// A pool grows to as many consumers as it takes to drain its queue within `targetDrainTime` at the handler latency
+// observed over the last interval, and shrinks by one consumer at a time once the queue is empty and the consumers
+// spent less than `idleUtilization` of the interval in the handler.
+public class ListenerAutoscaler implements DisposableBean {
+
+    private final RabbitListenerEndpointRegistry registry;
+    private final AmqpAdmin amqpAdmin;
+    private final Duration interval;
+    private final Duration targetDrainTime;
+    private final double idleUtilization;
+    private final List<PoolState> pools;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    public ListenerAutoscaler(RabbitListenerEndpointRegistry registry,
+                              AmqpAdmin amqpAdmin,
+                              MeterRegistry meterRegistry,
+                              Duration interval,
+                              Duration targetDrainTime,
+                              double idleUtilization,
+                              List<ListenerPool> pools) {
+        this.registry = registry;
+        this.amqpAdmin = amqpAdmin;
+        this.interval = interval;
+        this.targetDrainTime = targetDrainTime;
+        this.idleUtilization = idleUtilization;
+        this.pools = pools.stream()
+                .map(pool -> new PoolState(pool, meterRegistry))
+                .toList();
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "rpc-listener-autoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::scaleAll,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void scaleAll() {
+        for (PoolState state : pools) {
+            try {
+                scale(state);
+            } catch (RuntimeException exception) {
+                // the broker may be briefly unreachable, the next round retries
+            }
+        }
+    }
+
+    private void scale(PoolState state) {
+        MessageListenerContainer listenerContainer = registry.getListenerContainer(state.pool.listenerId());
+        if (!(listenerContainer instanceof SimpleMessageListenerContainer container) || !container.isRunning())
+            return;
+
+        QueueInformation queue = amqpAdmin.getQueueInfo(state.pool.queue());
+        int backlog = queue == null ? 0 : queue.getMessageCount();
+        state.backlog.set(backlog);
+
+        long count = state.timer.count();
+        double busyNanos = state.timer.totalTime(TimeUnit.NANOSECONDS) - state.lastBusyNanos;
+        long handled = count - state.lastCount;
+        state.lastCount = count;
+        state.lastBusyNanos += busyNanos;
+        if (handled > 0)
+            state.latencyNanos = busyNanos / handled;
+
+        int consumers = state.consumers.get();
+        double utilization = busyNanos / ((double) interval.toNanos() * consumers);
+        int wanted;
+        if (backlog > 0) {
+            wanted = state.latencyNanos > 0
+                    ? (int) Math.ceil(backlog * state.latencyNanos / targetDrainTime.toNanos())
+                    : consumers + 1;
+            wanted = Math.max(wanted, consumers);
+        } else if (utilization < idleUtilization) {
+            wanted = consumers - 1;
+        } else {
+            wanted = consumers;
+        }
+        wanted = Math.max(state.pool.minConsumers(), Math.min(wanted, state.pool.maxConsumers()));
+
+        if (wanted != consumers) {
+            container.setConcurrentConsumers(wanted);
+            state.consumers.set(wanted);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class PoolState {
+        private final ListenerPool pool;
+        private final Timer timer;
+        private final AtomicInteger consumers;
+        private final AtomicInteger backlog = new AtomicInteger();
+        private long lastCount;
+        private double lastBusyNanos;
+        private double latencyNanos;
+
+        private PoolState(ListenerPool pool, MeterRegistry meterRegistry) {
+            this.pool = pool;
+            this.timer = ListenerTiming.timer(meterRegistry, pool.listenerId());
+            this.consumers = new AtomicInteger(pool.minConsumers());
+            Tags tags = Tags.of("listener", pool.listenerId());
+            meterRegistry.gauge("rpc.listener.consumers", tags, consumers);
+            meterRegistry.gauge("rpc.listener.backlog", tags, backlog);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.mikkkkkkka.common.rpc.listener;
+
+// One traffic class of a service: the listener container consuming `queue` and the bounds the autoscaler keeps it in.
+// `priority` is the consumer priority (x-priority), so instances with a higher one get the messages first.
+public record ListenerPool(String listenerId,
+                           String queue,
+                           int minConsumers,
+                           int maxConsumers,
+                           int prefetch,
+                           int priority) {
+
+    public ListenerPool {
+        if (minConsumers < 1 || maxConsumers < minConsumers)
+            throw new IllegalArgumentException("Invalid consumer bounds for " + listenerId
+                    + ": " + minConsumers + ".." + maxConsumers);
+    }
+}
@@ -0,0 +1,34 @@
+package com.mikkkkkkka.common.rpc.listener;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.util.concurrent.TimeUnit;
+
+// Container advice timing every listener invocation, reply publishing included
+public class ListenerTiming implements MethodInterceptor {
+
+    private final Timer timer;
+
+    public ListenerTiming(MeterRegistry meterRegistry, String listenerId) {
+        this.timer = timer(meterRegistry, listenerId);
+    }
+
+    public static Timer timer(MeterRegistry meterRegistry, String listenerId) {
+        return Timer.builder("rpc.listener.handle")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
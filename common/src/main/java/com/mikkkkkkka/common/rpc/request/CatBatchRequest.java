@@ -0,0 +1,10 @@
+package com.mikkkkkkka.common.rpc.request;
+
+import com.mikkkkkkka.common.model.dto.CatDto;
+
+import java.util.List;
+
+public record CatBatchRequest(
+        List<CatDto> cats
+) {
+}
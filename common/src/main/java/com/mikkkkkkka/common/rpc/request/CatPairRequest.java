@@ -0,0 +1,8 @@
+package com.mikkkkkkka.common.rpc.request;
+
+public record CatPairRequest(
+        Long ownerId,
+        long cat1Id,
+        long cat2Id
+) {
+}
@@ -0,0 +1,7 @@
+package com.mikkkkkkka.common.rpc.request;
+
+public record ExportRequest(
+        long afterId,
+        int limit
+) {
+}
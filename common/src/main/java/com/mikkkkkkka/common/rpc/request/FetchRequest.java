@@ -0,0 +1,10 @@
+package com.mikkkkkkka.common.rpc.request;
+
+import java.util.List;
+
+public record FetchRequest(
+        Long ownerId,
+        long id,
+        List<String> fields
+) {
+}
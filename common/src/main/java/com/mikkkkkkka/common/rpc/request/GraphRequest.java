@@ -0,0 +1,10 @@
+package com.mikkkkkkka.common.rpc.request;
+
+public record GraphRequest(
+        Long ownerId,
+        long id,
+        Long otherId,
+        int depth,
+        int limit
+) {
+}
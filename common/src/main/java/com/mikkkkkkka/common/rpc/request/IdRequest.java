@@ -0,0 +1,6 @@
+package com.mikkkkkkka.common.rpc.request;
+
+public record IdRequest(
+        long id
+) {
+}
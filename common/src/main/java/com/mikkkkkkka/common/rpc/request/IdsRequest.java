@@ -0,0 +1,8 @@
+package com.mikkkkkkka.common.rpc.request;
+
+import java.util.List;
+
+public record IdsRequest(
+        List<Long> ids
+) {
+}
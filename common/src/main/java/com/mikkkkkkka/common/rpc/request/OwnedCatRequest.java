@@ -0,0 +1,7 @@
+package com.mikkkkkkka.common.rpc.request;
+
+public record OwnedCatRequest(
+        long ownerId,
+        long catId
+) {
+}
@@ -0,0 +1,10 @@
+package com.mikkkkkkka.common.rpc.request;
+
+import com.mikkkkkkka.common.model.dto.OwnerDto;
+
+import java.util.List;
+
+public record OwnerBatchRequest(
+        List<OwnerDto> owners
+) {
+}
@@ -0,0 +1,12 @@
+package com.mikkkkkkka.common.rpc.request;
+
+import com.mikkkkkkka.common.model.filter.OwnerFilter;
+
+public record OwnerListRequest(
+        OwnerFilter filter,
+        int page,
+        int size,
+        String sort,
+        String after
+) {
+}
@@ -0,0 +1,10 @@
+package com.mikkkkkkka.common.rpc.request;
+
+import com.mikkkkkkka.common.model.dto.CatDto;
+
+public record UpdateCatRequest(
+        Long ownerId,
+        long id,
+        CatDto cat
+) {
+}
@@ -0,0 +1,9 @@
+package com.mikkkkkkka.common.rpc.request;
+
+import com.mikkkkkkka.common.model.dto.OwnerDto;
+
+public record UpdateOwnerRequest(
+        long id,
+        OwnerDto owner
+) {
+}
@@ -0,0 +1,43 @@
+package com.mikkkkkkka.common.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+// Keeps the last `capacity` finished spans for the traces actuator endpoint
+public class InMemorySpanHandler extends SpanHandler {
+
+    private final int capacity;
+    private final Deque<Map<String, Object>> spans;
+
+    public InMemorySpanHandler(int capacity) {
+        this.capacity = capacity;
+        this.spans = new ArrayDeque<>(capacity);
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause != Cause.FINISHED)
+            return true;
+        Map<String, Object> record = SpanRecords.toRecord(span);
+        synchronized (spans) {
+            if (spans.size() == capacity)
+                spans.removeFirst();
+            spans.addLast(record);
+        }
+        return true;
+    }
+
+    public List<Map<String, Object>> spans(String traceId) {
+        synchronized (spans) {
+            return spans.stream()
+                    .filter(span -> traceId == null || traceId.equals(span.get("traceId")))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.mikkkkkkka.common.tracing;
+
+import brave.handler.MutableSpan;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Flattens a finished span into the fields of the Zipkin v2 JSON format
+final class SpanRecords {
+
+    private SpanRecords() {
+    }
+
+    static Map<String, Object> toRecord(MutableSpan span) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("traceId", span.traceId());
+        if (span.parentId() != null)
+            record.put("parentId", span.parentId());
+        record.put("id", span.id());
+        if (span.kind() != null)
+            record.put("kind", span.kind().name());
+        record.put("name", span.name());
+        record.put("timestamp", span.startTimestamp());
+        record.put("duration", span.finishTimestamp() - span.startTimestamp());
+        record.put("localEndpoint", Map.of("serviceName", String.valueOf(span.localServiceName())));
+        if (span.remoteServiceName() != null)
+            record.put("remoteEndpoint", Map.of("serviceName", span.remoteServiceName()));
+        Map<String, String> tags = new LinkedHashMap<>();
+        span.forEachTag((target, key, value) -> target.put(key, value), tags);
+        if (span.error() != null)
+            tags.putIfAbsent("error", String.valueOf(span.error().getMessage()));
+        if (!tags.isEmpty())
+            record.put("tags", tags);
+        return record;
+    }
+}
@@ -0,0 +1,28 @@
+package com.mikkkkkkka.common.tracing;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+
+import java.util.function.Supplier;
+
+public final class Spans {
+
+    private Spans() {
+    }
+
+    // Runs `work` in a child span of the current one, so anything it traces itself (SQL, nested calls) nests below
+    public static <T> T inSpan(Tracer tracer, String name, String action, Supplier<T> work) {
+        Span span = tracer.nextSpan()
+                .name(name)
+                .tag("action", action == null ? "none" : action)
+                .start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            return work.get();
+        } catch (RuntimeException exception) {
+            span.error(exception);
+            throw exception;
+        } finally {
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.mikkkkkkka.common.tracing;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+// GET /actuator/traces?traceId=... lists the spans this process kept in memory, all of them without traceId
+@Endpoint(id = "traces")
+public class TracesEndpoint {
+
+    private final InMemorySpanHandler spanHandler;
+
+    public TracesEndpoint(InMemorySpanHandler spanHandler) {
+        this.spanHandler = spanHandler;
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> traces(@Nullable String traceId) {
+        return spanHandler.spans(traceId);
+    }
+}
@@ -0,0 +1,35 @@
+package com.mikkkkkkka.loadtest;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+final class Applications {
+
+    private Applications() {
+    }
+
+    // Every module ships its own application.properties, and on this shared classpath only the first one would be
+    // found. Point each application at the file next to its own classes, then override with `properties`.
+    static ConfigurableApplicationContext start(Class<?> application, Map<String, Object> properties) throws Exception {
+        URL classes = application.getProtectionDomain().getCodeSource().getLocation();
+        String configLocation = classes.getPath().endsWith(".jar")
+                ? "jar:" + classes + "!/application.properties"
+                : classes + "application.properties";
+
+        List<String> args = new ArrayList<>();
+        args.add("--spring.config.location=" + configLocation);
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+        return new SpringApplicationBuilder(application)
+                .run(args.toArray(String[]::new));
+    }
+
+    static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+}
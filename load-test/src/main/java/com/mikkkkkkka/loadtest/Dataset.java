@@ -0,0 +1,10 @@
+package com.mikkkkkkka.loadtest;
+
+import java.util.List;
+import java.util.Map;
+
+// What the seeder created: ids to address and the owner of every cat, needed to update a cat without detaching it
+record Dataset(List<Long> ownerIds,
+               List<Long> catIds,
+               Map<Long, Long> catOwners) {
+}
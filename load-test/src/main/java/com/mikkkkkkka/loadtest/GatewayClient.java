@@ -0,0 +1,78 @@
+package com.mikkkkkkka.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+// Thin JSON-over-HTTP client for the gateway, shared by the seeder and the load generator
+final class GatewayClient {
+
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .build();
+    private final HttpClient http = HttpClient.newBuilder()
+            .executor(Executors.newCachedThreadPool())
+            .build();
+    private final String baseUrl;
+    private String token;
+
+    GatewayClient(int port) {
+        this.baseUrl = "http://localhost:" + port;
+    }
+
+    void authenticate(String token) {
+        this.token = token;
+    }
+
+    HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    HttpRequest post(String path, Object body) {
+        return request(path).POST(body(body)).build();
+    }
+
+    HttpRequest put(String path, Object body) {
+        return request(path).PUT(body(body)).build();
+    }
+
+    CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest request) {
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    <T> T send(HttpRequest request, TypeReference<T> type) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 != 2)
+            throw new IOException(request.method() + " " + request.uri().getPath() + " returned "
+                    + response.statusCode() + ": " + new String(response.body()));
+        return type == null ? null : mapper.readValue(response.body(), type);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json");
+        if (token != null)
+            builder.header("Authorization", "Bearer " + token);
+        return builder;
+    }
+
+    private HttpRequest.BodyPublisher body(Object body) {
+        try {
+            return body == null
+                    ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body));
+        } catch (IOException exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+}
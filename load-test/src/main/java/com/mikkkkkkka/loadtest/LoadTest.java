@@ -0,0 +1,84 @@
+package com.mikkkkkkka.loadtest;
+
+import com.mikkkkkkka.cat.CatServiceApplication;
+import com.mikkkkkkka.gateway.GatewayApplication;
+import com.mikkkkkkka.owner.OwnerServiceApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Random;
+
+// Boots the three applications against an embedded broker and database, seeds them through the gateway
+// and drives an open-model request mix, printing per-endpoint throughput and latency percentiles.
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Random random = new Random(options.seed());
+
+        try (EmbeddedBroker broker = new EmbeddedBroker();
+             EmbeddedDatabase database = new EmbeddedDatabase()) {
+            Map<String, Object> catProperties = serviceProperties(broker, database.createDatabase("catdb"));
+            catProperties.put("spring.threads.virtual.enabled", options.virtualThreads());
+            ConfigurableApplicationContext catService = Applications.start(CatServiceApplication.class, catProperties);
+            Map<String, Object> ownerProperties = serviceProperties(broker, database.createDatabase("ownerdb"));
+            ownerProperties.put("spring.threads.virtual.enabled", options.virtualThreads());
+            ConfigurableApplicationContext ownerService = Applications.start(OwnerServiceApplication.class, ownerProperties);
+
+            Map<String, Object> gatewayProperties = serviceProperties(broker, database.createDatabase("userdb"));
+            gatewayProperties.put("spring.threads.virtual.enabled", options.virtualThreads());
+            gatewayProperties.put("gateway.auth.mode", "token");
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            gatewayProperties.put("gateway.auth.token.secret", HexFormat.of().formatHex(secret));
+            ConfigurableApplicationContext gateway = Applications.start(GatewayApplication.class, gatewayProperties);
+
+            try (ThreadMonitor threadMonitor = new ThreadMonitor()) {
+                GatewayClient client = new GatewayClient(Applications.port(gateway));
+                Seeder seeder = new Seeder(client, random);
+                seeder.login("load-test", "load-test");
+                Dataset dataset = seeder.seed(options.owners(), options.cats());
+                System.out.printf("Seeded %d owners and %d cats, %d of them owned%n",
+                        dataset.ownerIds().size(), dataset.catIds().size(), dataset.catOwners().size());
+
+                Mix mix = new Mix(client, seeder, dataset, random);
+                OpenModelGenerator generator = new OpenModelGenerator(client, mix, random,
+                        options.rate(), options.maxOutstanding());
+                System.out.printf("Offering %.1f req/s: %s warmup, %s measured, %s threads%n",
+                        options.rate(), options.warmup(), options.duration(),
+                        options.virtualThreads() ? "virtual" : "platform");
+                threadMonitor.start();
+                var stats = generator.run(options.warmup(), options.duration());
+                if (!generator.awaitCompletion(Duration.ofMinutes(1)))
+                    System.out.println("Some requests did not complete within a minute after the run");
+                Report.print(System.out, stats.values(), options.duration());
+                threadMonitor.print(System.out);
+            } finally {
+                gateway.close();
+                ownerService.close();
+                catService.close();
+            }
+        }
+    }
+
+    static Map<String, Object> serviceProperties(EmbeddedBroker broker, String jdbcUrl) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        // the services pin their actuator to a fixed local port, which a second run on the machine would collide with
+        properties.put("management.server.port", 0);
+        properties.put("spring.rabbitmq.port", broker.port());
+        properties.put("spring.datasource.url", jdbcUrl);
+        properties.put("spring.datasource.username", EmbeddedDatabase.USER);
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("management.tracing.sampling.probability", 0.0);
+        // the broker logs every channel and subscription through the same logging system
+        properties.put("logging.level.qpid", "WARN");
+        properties.put("logging.level.org.apache.qpid", "WARN");
+        return properties;
+    }
+}
@@ -0,0 +1,93 @@
+package com.mikkkkkkka.loadtest;
+
+import com.mikkkkkkka.common.model.CatColor;
+import com.mikkkkkkka.common.model.dto.CatDto;
+
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+// Read-heavy mix over the CatController/OwnerController endpoints: point reads dominate,
+// followed by filtered and cursor listings, with roughly a quarter of the traffic writing
+final class Mix {
+
+    record Operation(String endpoint, int weight, Supplier<HttpRequest> request) {
+    }
+
+    private final List<Operation> operations;
+    private final int totalWeight;
+    private final Random random;
+
+    Mix(GatewayClient client, Seeder seeder, Dataset dataset, Random random) {
+        this.random = random;
+        this.operations = List.of(
+                new Operation("GET /api/cats/{id}", 25,
+                        () -> client.get("/api/cats/" + anyCat(dataset))),
+                new Operation("GET /api/cats/{id}?fields", 10,
+                        () -> client.get("/api/cats/" + anyCat(dataset) + "?fields=name,color,ownerId")),
+                new Operation("GET /api/cats?filter", 10,
+                        () -> client.get("/api/cats?size=20&ownerId=" + anyOwner(dataset)
+                                + "&colors=" + anyColor() + "," + anyColor())),
+                new Operation("GET /api/cats?sort", 5,
+                        () -> client.get("/api/cats?size=20&sort=birthday")),
+                new Operation("GET /api/owners/{id}", 15,
+                        () -> client.get("/api/owners/" + anyOwner(dataset))),
+                new Operation("GET /api/owners", 5,
+                        () -> client.get("/api/owners?size=20&page=" + random.nextInt(5))),
+                new Operation("POST /api/cats", 5,
+                        () -> client.post("/api/cats", seeder.randomCat(random.nextInt(), null))),
+                new Operation("POST /api/owners", 3,
+                        () -> client.post("/api/owners", seeder.randomOwner(random.nextInt()))),
+                new Operation("PUT /api/cats/{id}", 12,
+                        () -> updateCat(client, seeder, dataset)),
+                new Operation("POST /api/cats/friendships", 10,
+                        () -> client.post("/api/cats/friendships?cat1Id=" + anyCat(dataset)
+                                + "&cat2Id=" + anyCat(dataset), null)),
+                new Operation("GET /api/cats/{id}/graph/friends", 3,
+                        () -> client.get("/api/cats/" + anyCat(dataset) + "/graph/friends?depth=2")),
+                new Operation("GET /api/cats/{id}/graph/path", 2,
+                        () -> client.get("/api/cats/" + anyCat(dataset) + "/graph/path?to=" + anyCat(dataset))));
+        this.totalWeight = operations.stream().mapToInt(Operation::weight).sum();
+    }
+
+    List<Operation> operations() {
+        return operations;
+    }
+
+    Operation next() {
+        int ticket = random.nextInt(totalWeight);
+        for (Operation operation : operations) {
+            ticket -= operation.weight();
+            if (ticket < 0)
+                return operation;
+        }
+        throw new IllegalStateException();
+    }
+
+    // A null ownerId would detach the cat and a differing friend list is rejected, so keep both as they are
+    private HttpRequest updateCat(GatewayClient client, Seeder seeder, Dataset dataset) {
+        long id = anyCat(dataset);
+        CatDto random = seeder.randomCat(this.random.nextInt(), dataset.catOwners().get(id));
+        return client.put("/api/cats/" + id, new CatDto(id,
+                random.name(),
+                random.birthday(),
+                random.breed(),
+                random.color(),
+                random.ownerId(),
+                null,
+                null));
+    }
+
+    private long anyCat(Dataset dataset) {
+        return dataset.catIds().get(random.nextInt(dataset.catIds().size()));
+    }
+
+    private long anyOwner(Dataset dataset) {
+        return dataset.ownerIds().get(random.nextInt(dataset.ownerIds().size()));
+    }
+
+    private CatColor anyColor() {
+        return CatColor.values()[random.nextInt(CatColor.values().length)];
+    }
+}
@@ -0,0 +1,77 @@
+package com.mikkkkkkka.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Open workload: arrivals follow a Poisson process at a fixed rate no matter how fast the system answers.
+// Latency is measured from the moment a request was due, not from when it was actually sent, so a stalled
+// gateway shows up in the tail instead of silently lowering the offered load (coordinated omission).
+final class OpenModelGenerator {
+
+    private final GatewayClient client;
+    private final Mix mix;
+    private final Random random;
+    private final double rate;
+    private final int maxOutstanding;
+    private final Semaphore outstanding;
+
+    OpenModelGenerator(GatewayClient client, Mix mix, Random random, double rate, int maxOutstanding) {
+        this.client = client;
+        this.mix = mix;
+        this.random = random;
+        this.rate = rate;
+        this.maxOutstanding = maxOutstanding;
+        this.outstanding = new Semaphore(maxOutstanding);
+    }
+
+    Map<String, EndpointStats> run(Duration warmup, Duration duration) throws InterruptedException {
+        Map<String, EndpointStats> discarded = newStats();
+        Map<String, EndpointStats> measured = newStats();
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long intended = start;
+        while (intended < end) {
+            intended += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            long wait = intended - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+
+            Mix.Operation operation = mix.next();
+            EndpointStats stats = (intended < measureFrom ? discarded : measured).get(operation.endpoint());
+            // past the cap the client would only queue locally, count the arrival as lost instead
+            if (!outstanding.tryAcquire()) {
+                stats.drop();
+                continue;
+            }
+            long due = intended;
+            client.sendAsync(operation.request().get())
+                    .whenComplete((response, failure) -> {
+                        stats.record(System.nanoTime() - due, failure == null && response.statusCode() / 100 == 2);
+                        outstanding.release();
+                    });
+        }
+        return measured;
+    }
+
+    // Requests still in flight after the last arrival belong to the measurement too
+    boolean awaitCompletion(Duration timeout) throws InterruptedException {
+        if (!outstanding.tryAcquire(maxOutstanding, timeout.toNanos(), TimeUnit.NANOSECONDS))
+            return false;
+        outstanding.release(maxOutstanding);
+        return true;
+    }
+
+    private Map<String, EndpointStats> newStats() {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        mix.operations().forEach(operation -> stats.put(operation.endpoint(), new EndpointStats(operation.endpoint())));
+        return stats;
+    }
+}
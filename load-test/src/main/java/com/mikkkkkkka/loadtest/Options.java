@@ -0,0 +1,44 @@
+package com.mikkkkkkka.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// --rate=200 --warmup=10s --duration=60s --owners=200 --cats=2000 --max-outstanding=5000 --seed=42 --virtual-threads=false
+record Options(double rate,
+               Duration warmup,
+               Duration duration,
+               int owners,
+               int cats,
+               int maxOutstanding,
+               long seed,
+               boolean virtualThreads) {
+
+    static Options parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new Options(Double.parseDouble(values.getOrDefault("rate", "200")),
+                duration(values.getOrDefault("warmup", "10s")),
+                duration(values.getOrDefault("duration", "60s")),
+                Integer.parseInt(values.getOrDefault("owners", "200")),
+                Integer.parseInt(values.getOrDefault("cats", "2000")),
+                Integer.parseInt(values.getOrDefault("max-outstanding", "5000")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                Boolean.parseBoolean(values.getOrDefault("virtual-threads", "false")));
+    }
+
+    private static Duration duration(String value) {
+        if (value.endsWith("ms"))
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        if (value.endsWith("m"))
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        if (value.endsWith("s"))
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+}
@@ -0,0 +1,51 @@
+package com.mikkkkkkka.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+
+final class Report {
+
+    private static final String ROW = "%-34s %9s %7s %8s %9s %9s %9s %9s %9s%n";
+
+    private Report() {
+    }
+
+    static void print(PrintStream out, Collection<EndpointStats> endpoints, Duration duration) {
+        double seconds = duration.toNanos() / 1e9;
+        out.printf(Locale.ROOT, ROW, "endpoint", "requests", "errors", "dropped", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram total = new Histogram(3);
+        long errors = 0;
+        long dropped = 0;
+        for (EndpointStats stats : endpoints) {
+            row(out, stats.endpoint(), stats.latencies(), stats.errors(), stats.dropped(), seconds);
+            total.add(stats.latencies());
+            errors += stats.errors();
+            dropped += stats.dropped();
+        }
+        row(out, "total", total, errors, dropped, seconds);
+    }
+
+    private static void row(PrintStream out, String name, Histogram latencies, long errors, long dropped, double seconds) {
+        long count = latencies.getTotalCount();
+        out.printf(Locale.ROOT, ROW,
+                name,
+                count,
+                errors,
+                dropped,
+                String.format(Locale.ROOT, "%.1f", count / seconds),
+                millis(latencies, 50),
+                millis(latencies, 99),
+                millis(latencies, 99.9),
+                count == 0 ? "-" : String.format(Locale.ROOT, "%.2f", latencies.getMaxValue() / 1e6));
+    }
+
+    private static String millis(Histogram latencies, double percentile) {
+        if (latencies.getTotalCount() == 0)
+            return "-";
+        return String.format(Locale.ROOT, "%.2f", latencies.getValueAtPercentile(percentile) / 1e6);
+    }
+}
@@ -0,0 +1,111 @@
+package com.mikkkkkkka.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.mikkkkkkka.common.model.CatColor;
+import com.mikkkkkkka.common.model.UserRole;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
+import com.mikkkkkkka.common.model.dto.CatDto;
+import com.mikkkkkkka.common.model.dto.OwnerDto;
+import com.mikkkkkkka.common.model.dto.TokenDto;
+import com.mikkkkkkka.common.model.dto.UserDto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+// Fills the databases through the public API, so the services see the same writes they would in production
+final class Seeder {
+
+    private static final TypeReference<TokenDto> TOKEN = new TypeReference<>() {
+    };
+    private static final TypeReference<List<BatchItemResult<OwnerDto>>> OWNER_RESULTS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<BatchItemResult<CatDto>>> CAT_RESULTS = new TypeReference<>() {
+    };
+    private static final String[] BREEDS = {"Siberian", "Maine Coon", "Sphynx", "British Shorthair", "Bengal", "Persian"};
+    // Kept low so slow seeding calls do not open the gateway's circuit breakers before the run starts
+    private static final int CONCURRENCY = 8;
+
+    private final GatewayClient client;
+    private final Random random;
+
+    Seeder(GatewayClient client, Random random) {
+        this.client = client;
+        this.random = random;
+    }
+
+    void login(String username, String password) throws Exception {
+        client.send(client.post("/api/auth/register", new UserDto(null, username, password, UserRole.ADMIN, null)), null);
+        TokenDto token = client.send(client.post("/api/auth/login", new UserDto(null, username, password, null, null)), TOKEN);
+        client.authenticate(token.token());
+    }
+
+    Dataset seed(int owners, int cats) throws Exception {
+        List<OwnerDto> newOwners = new ArrayList<>(owners);
+        for (int i = 0; i < owners; i++)
+            newOwners.add(randomOwner(i));
+        List<Long> ownerIds = client.send(client.post("/api/owners/batch", newOwners), OWNER_RESULTS).stream()
+                .filter(result -> result.status() == 200)
+                .map(result -> result.data().id())
+                .toList();
+
+        List<CatDto> newCats = new ArrayList<>(cats);
+        for (int i = 0; i < cats; i++)
+            newCats.add(randomCat(i, null));
+        List<Long> catIds = client.send(client.post("/api/cats/batch", newCats), CAT_RESULTS).stream()
+                .filter(result -> result.status() == 200)
+                .map(result -> result.data().id())
+                .toList();
+
+        // creation ignores ownerId, ownership goes through the owner service
+        Map<Long, Long> catOwners = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(CONCURRENCY);
+        List<CompletableFuture<?>> calls = new ArrayList<>();
+        for (Long catId : catIds) {
+            Long ownerId = ownerIds.get(random.nextInt(ownerIds.size()));
+            permits.acquire();
+            calls.add(client.sendAsync(client.post("/api/owners/ownerships?ownerId=" + ownerId + "&catId=" + catId, null))
+                    .whenComplete((response, failure) -> {
+                        permits.release();
+                        if (failure == null && response.statusCode() / 100 == 2)
+                            catOwners.put(catId, ownerId);
+                    }));
+        }
+        for (int i = 0; i < catIds.size() / 2; i++) {
+            long cat1Id = catIds.get(random.nextInt(catIds.size()));
+            long cat2Id = catIds.get(random.nextInt(catIds.size()));
+            if (cat1Id == cat2Id)
+                continue;
+            permits.acquire();
+            calls.add(client.sendAsync(client.post("/api/cats/friendships?cat1Id=" + cat1Id + "&cat2Id=" + cat2Id, null))
+                    .whenComplete((response, failure) -> permits.release()));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+
+        return new Dataset(ownerIds, catIds, Map.copyOf(catOwners));
+    }
+
+    OwnerDto randomOwner(int index) {
+        return new OwnerDto(null, "owner-" + index + "-" + random.nextInt(1_000_000), randomDate(1950, 2005), null);
+    }
+
+    CatDto randomCat(int index, Long ownerId) {
+        return new CatDto(null,
+                "cat-" + index + "-" + random.nextInt(1_000_000),
+                randomDate(2005, 2024),
+                BREEDS[random.nextInt(BREEDS.length)],
+                CatColor.values()[random.nextInt(CatColor.values().length)],
+                ownerId,
+                null,
+                null);
+    }
+
+    private LocalDate randomDate(int fromYear, int toYear) {
+        return LocalDate.of(fromYear + random.nextInt(toYear - fromYear), 1 + random.nextInt(12), 1 + random.nextInt(28));
+    }
+}
@@ -0,0 +1,99 @@
+package com.mikkkkkkka.loadtest;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Watches the threads of the whole process during a run: platform threads, the carrier threads that run
+// virtual threads, and every jdk.VirtualThreadPinned event, i.e. a virtual thread that blocked while holding
+// its carrier. All three applications share the process, so the numbers cover the gateway and both services.
+final class ThreadMonitor implements AutoCloseable {
+
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+    private static final String CARRIER_THREAD = "jdk.internal.misc.CarrierThread";
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Recording recording = new Recording();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "thread-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger peakCarriers = new AtomicInteger();
+
+    ThreadMonitor() {
+        // no threshold: a short pin still takes a carrier away from the other virtual threads
+        recording.enable(PINNED).withoutThreshold().withStackTrace();
+    }
+
+    void start() {
+        threads.resetPeakThreadCount();
+        recording.start();
+        sampler.scheduleAtFixedRate(this::sampleCarriers, 0, 1, TimeUnit.SECONDS);
+    }
+
+    // Stops the recording and keeps it on disk, so the pinned stacks can be opened in JDK Mission Control
+    void print(PrintStream out) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("load-test-pinning", ".jfr");
+        recording.dump(file);
+
+        long pinned = 0;
+        long pinnedNanos = 0;
+        Map<String, Long> pinnedAt = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            pinned++;
+            pinnedNanos += event.getDuration().toNanos();
+            pinnedAt.merge(pinnedFrame(event), 1L, Long::sum);
+        }
+
+        out.printf(Locale.ROOT, "Platform threads: %d peak, carrier threads: %d peak%n",
+                threads.getPeakThreadCount(), peakCarriers.get());
+        out.printf(Locale.ROOT, "Pinned virtual threads: %d events, %.2f ms in total, recorded in %s%n",
+                pinned, pinnedNanos / 1e6, file);
+        pinnedAt.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(5)
+                .forEach(entry -> out.printf(Locale.ROOT, "    %6d  %s%n", entry.getValue(), entry.getKey()));
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+        recording.close();
+    }
+
+    private void sampleCarriers() {
+        int carriers = (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getClass().getName().equals(CARRIER_THREAD))
+                .count();
+        peakCarriers.accumulateAndGet(carriers, Math::max);
+    }
+
+    // The first frame outside the JDK names the code that blocked, the frames above it are the park itself
+    private static String pinnedFrame(RecordedEvent event) {
+        if (event.getStackTrace() == null)
+            return "unknown";
+        return event.getStackTrace().getFrames().stream()
+                .map(RecordedFrame::getMethod)
+                .map(method -> method.getType().getName() + "." + method.getName())
+                .filter(name -> !name.startsWith("java.") && !name.startsWith("jdk.") && !name.startsWith("sun."))
+                .findFirst()
+                .orElse("unknown");
+    }
+}
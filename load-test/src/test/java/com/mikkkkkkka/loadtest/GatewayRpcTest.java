@@ -0,0 +1,196 @@
+package com.mikkkkkkka.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mikkkkkkka.cat.CatServiceApplication;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
+import com.mikkkkkkka.common.model.dto.CatDto;
+import com.mikkkkkkka.common.model.dto.OwnerDto;
+import com.mikkkkkkka.common.model.dto.OwnerDtoWithCats;
+import com.mikkkkkkka.common.tracing.InMemorySpanHandler;
+import com.mikkkkkkka.gateway.GatewayApplication;
+import com.mikkkkkkka.owner.OwnerServiceApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs the gateway and both services against one broker and checks the RPC plumbing between them
+@DisabledIfSystemProperty(named = "user.name", matches = "root", disabledReason = "initdb refuses to run as root")
+class GatewayRpcTest {
+
+    private static final TypeReference<CatDto> CAT = new TypeReference<>() {
+    };
+    private static final TypeReference<List<BatchItemResult<CatDto>>> CAT_RESULTS = new TypeReference<>() {
+    };
+    private static final TypeReference<OwnerDto> OWNER = new TypeReference<>() {
+    };
+    private static final TypeReference<OwnerDtoWithCats> OWNER_WITH_CATS = new TypeReference<>() {
+    };
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .build();
+
+    private static EmbeddedBroker broker;
+    private static EmbeddedDatabase database;
+    private static ConfigurableApplicationContext catService;
+    private static ConfigurableApplicationContext ownerService;
+    private static ConfigurableApplicationContext gateway;
+    private static GatewayClient client;
+    private static Seeder seeder;
+
+    @BeforeAll
+    static void start() throws Exception {
+        broker = new EmbeddedBroker();
+        database = new EmbeddedDatabase();
+        catService = Applications.start(CatServiceApplication.class, tracedProperties("catdb"));
+        ownerService = Applications.start(OwnerServiceApplication.class, tracedProperties("ownerdb"));
+
+        Map<String, Object> gatewayProperties = tracedProperties("userdb");
+        gatewayProperties.put("gateway.auth.mode", "token");
+        gatewayProperties.put("gateway.auth.token.secret", "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff");
+        // small chunks, so that an export of a few dozen cats takes several round trips
+        gatewayProperties.put("gateway.export.chunk-size", 7);
+        gateway = Applications.start(GatewayApplication.class, gatewayProperties);
+
+        client = new GatewayClient(Applications.port(gateway));
+        seeder = new Seeder(client, new Random(1));
+        seeder.login("gateway-rpc-test", "gateway-rpc-test");
+    }
+
+    // the load test samples nothing, every trace is kept here so that both ends of a call can be found
+    private static Map<String, Object> tracedProperties(String databaseName) throws Exception {
+        Map<String, Object> properties = LoadTest.serviceProperties(broker, database.createDatabase(databaseName));
+        properties.put("management.tracing.sampling.probability", 1.0);
+        properties.put("tracing.exporter", "memory");
+        return properties;
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        for (ConfigurableApplicationContext context : new ConfigurableApplicationContext[]{gateway, ownerService, catService})
+            if (context != null)
+                context.close();
+        if (database != null)
+            database.close();
+        if (broker != null)
+            broker.close();
+    }
+
+    @Test
+    void clientsShareTheConfiguredTemplate() {
+        // a second template, such as Boot's default one, would publish without compression or trace headers
+        assertEquals(1, gateway.getBeansOfType(AmqpTemplate.class).size());
+        RabbitTemplate template = gateway.getBean(RabbitTemplate.class);
+        assertFalse(template.getBeforePublishPostProcessors().isEmpty());
+    }
+
+    @Test
+    void largeBodiesAreCompressedBothWays() throws Exception {
+        double requestBytes = compressedBytes(gateway);
+        double replyBytes = compressedBytes(catService);
+        // a few hundred cats put both the batch request and its per-item reply above the 8 KiB threshold.
+        // Qpid inflates gzip bodies for consumers that do not announce compression support, so only the
+        // compressing side is observable here, RabbitMQ delivers the bodies as published.
+        List<CatDto> cats = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+            cats.add(seeder.randomCat(i, null));
+
+        List<BatchItemResult<CatDto>> results = client.send(client.post("/api/cats/batch", cats), CAT_RESULTS);
+
+        assertEquals(cats.size(), results.size());
+        assertTrue(results.stream().allMatch(result -> result.status() == 200));
+        assertTrue(compressedBytes(gateway) > requestBytes, "request was not compressed");
+        assertTrue(compressedBytes(catService) > replyBytes, "reply was not compressed");
+    }
+
+    @Test
+    void gatewayAndServiceSpansShareOneTrace() throws Exception {
+        CatDto cat = client.send(client.post("/api/cats", seeder.randomCat(0, null)), CAT);
+
+        client.send(client.get("/api/cats/" + cat.id()), CAT);
+
+        // spans are handed over when they finish, which on the service side may come after the reply was sent
+        Map<String, Object> rpcSpan = awaitSpan(gateway, null, "rpc GET_CAT_BY_ID");
+        String traceId = (String) rpcSpan.get("traceId");
+        Map<String, Object> handleSpan = awaitSpan(catService, traceId, "rpc handle");
+        assertEquals(traceId, handleSpan.get("traceId"));
+    }
+
+    @Test
+    void exportFollowsEveryChunk() throws Exception {
+        List<CatDto> cats = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+            cats.add(seeder.randomCat(i, null));
+        List<Long> created = client.send(client.post("/api/cats/batch", cats), CAT_RESULTS).stream()
+                .map(result -> result.data().id())
+                .toList();
+
+        HttpResponse<byte[]> response = client.sendAsync(client.get("/api/cats/export")).get(30, TimeUnit.SECONDS);
+
+        assertEquals(200, response.statusCode());
+        List<Long> exported = new ArrayList<>();
+        for (String line : new String(response.body(), StandardCharsets.UTF_8).split("\n"))
+            exported.add(MAPPER.readValue(line, CatDto.class).id());
+        for (int i = 1; i < exported.size(); i++)
+            assertTrue(exported.get(i - 1) < exported.get(i), "export is not in id order");
+        assertTrue(exported.containsAll(created));
+    }
+
+    @Test
+    void singleOwnerGetsCatIdsFromTheProjection() throws Exception {
+        OwnerDto owner = client.send(client.post("/api/owners", seeder.randomOwner(0)), OWNER);
+        CatDto cat = client.send(client.post("/api/cats", seeder.randomCat(0, null)), CAT);
+        client.send(client.post("/api/owners/ownerships?ownerId=" + owner.id() + "&catId=" + cat.id(), null), null);
+
+        OwnerDtoWithCats withCats = client.send(client.get("/api/owners/" + owner.id()), OWNER_WITH_CATS);
+
+        assertEquals(List.of(cat.id()), withCats.cats().stream().map(Number::longValue).toList());
+        // the full-entity lookup loads every cat with its friends only for the ids
+        assertNull(gateway.getBean(MeterRegistry.class).find("gateway.rpc.requests")
+                .tag("action", "GET_CATS_BY_OWNER_ID")
+                .timer());
+    }
+
+    private static Map<String, Object> awaitSpan(ConfigurableApplicationContext context, String traceId, String name)
+            throws InterruptedException {
+        InMemorySpanHandler spans = context.getBean(InMemorySpanHandler.class);
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            var span = spans.spans(traceId).stream()
+                    .filter(candidate -> name.equalsIgnoreCase((String) candidate.get("name")))
+                    .reduce((first, second) -> second);
+            if (span.isPresent())
+                return span.get();
+            Thread.sleep(50);
+        }
+        throw new AssertionError("No span '" + name + "' in trace " + traceId);
+    }
+
+    private static double compressedBytes(ConfigurableApplicationContext context) {
+        return context.getBean(MeterRegistry.class).get("rpc.compression.bytes")
+                .tag("stage", "compressed")
+                .counter()
+                .count();
+    }
+}
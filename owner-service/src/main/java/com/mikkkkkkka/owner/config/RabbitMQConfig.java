@@ -1,23 +1,43 @@
 package com.mikkkkkkka.owner.config;
 
+import com.mikkkkkkka.common.rpc.codec.RpcCodecs;
+import com.mikkkkkkka.common.rpc.compression.RpcCompression;
+import com.mikkkkkkka.common.rpc.listener.ListenerAutoscaler;
+import com.mikkkkkkka.common.rpc.listener.ListenerPool;
+import com.mikkkkkkka.common.rpc.listener.ListenerTiming;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
 @Configuration
 public class RabbitMQConfig {
-    public static final String OWNER_QUEUE = "owner_queue";
     public static final String OWNER_EXCHANGE = "owner_exchange";
-    public static final String OWNER_ROUTING_KEY = "owner_routing_key";
 
-    @Bean
-    public Queue ownerQueue() {
-        return new Queue(OWNER_QUEUE);
-    }
+    // Point reads, scans and writes get separate queues so a burst of one class cannot queue up behind the others
+    public static final String OWNER_READ_QUEUE = "owner_read_queue";
+    public static final String OWNER_SCAN_QUEUE = "owner_scan_queue";
+    public static final String OWNER_WRITE_QUEUE = "owner_write_queue";
+    public static final String OWNER_READ_ROUTING_KEY = "owner.read";
+    public static final String OWNER_SCAN_ROUTING_KEY = "owner.scan";
+    public static final String OWNER_WRITE_ROUTING_KEY = "owner.write";
+
+    public static final String READ_LISTENER = "owner-read";
+    public static final String SCAN_LISTENER = "owner-scan";
+    public static final String WRITE_LISTENER = "owner-write";
 
     @Bean
     public TopicExchange ownerExchange() {
@@ -25,8 +45,105 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public Binding ownerBinding(Queue queue, TopicExchange exchange) {
-        return BindingBuilder.bind(queue).to(exchange).with(OWNER_ROUTING_KEY);
+    public Declarables ownerQueues(TopicExchange ownerExchange) {
+        Queue read = new Queue(OWNER_READ_QUEUE);
+        Queue scan = new Queue(OWNER_SCAN_QUEUE);
+        Queue write = new Queue(OWNER_WRITE_QUEUE);
+        return new Declarables(read, scan, write,
+                BindingBuilder.bind(read).to(ownerExchange).with(OWNER_READ_ROUTING_KEY),
+                BindingBuilder.bind(scan).to(ownerExchange).with(OWNER_SCAN_ROUTING_KEY),
+                BindingBuilder.bind(write).to(ownerExchange).with(OWNER_WRITE_ROUTING_KEY));
+    }
+
+    @Bean
+    public RpcCodecs rpcCodecs() {
+        return new RpcCodecs();
+    }
+
+    @Bean
+    public RpcCompression rpcCompression(@Value("${rpc.compression.threshold}") int threshold,
+                                         MeterRegistry meterRegistry) {
+        return new RpcCompression(threshold, meterRegistry);
+    }
+
+    @Bean
+    public ListenerPool readListenerPool(@Value("${rpc.listener.read.min-consumers}") int minConsumers,
+                                     @Value("${rpc.listener.read.max-consumers}") int maxConsumers,
+                                     @Value("${rpc.listener.read.prefetch}") int prefetch,
+                                     @Value("${rpc.listener.read.priority}") int priority) {
+        return new ListenerPool(READ_LISTENER, OWNER_READ_QUEUE, minConsumers, maxConsumers, prefetch, priority);
+    }
+
+    @Bean
+    public ListenerPool scanListenerPool(@Value("${rpc.listener.scan.min-consumers}") int minConsumers,
+                                     @Value("${rpc.listener.scan.max-consumers}") int maxConsumers,
+                                     @Value("${rpc.listener.scan.prefetch}") int prefetch,
+                                     @Value("${rpc.listener.scan.priority}") int priority) {
+        return new ListenerPool(SCAN_LISTENER, OWNER_SCAN_QUEUE, minConsumers, maxConsumers, prefetch, priority);
+    }
+
+    @Bean
+    public ListenerPool writeListenerPool(@Value("${rpc.listener.write.min-consumers}") int minConsumers,
+                                     @Value("${rpc.listener.write.max-consumers}") int maxConsumers,
+                                     @Value("${rpc.listener.write.prefetch}") int prefetch,
+                                     @Value("${rpc.listener.write.priority}") int priority) {
+        return new ListenerPool(WRITE_LISTENER, OWNER_WRITE_QUEUE, minConsumers, maxConsumers, prefetch, priority);
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory readListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                    ConnectionFactory connectionFactory,
+                                                                    RpcCompression rpcCompression,
+                                                                    MeterRegistry meterRegistry,
+                                                                    @Qualifier("readListenerPool") ListenerPool pool) {
+        return listenerContainerFactory(configurer, connectionFactory, rpcCompression, meterRegistry, pool);
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory scanListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                    ConnectionFactory connectionFactory,
+                                                                    RpcCompression rpcCompression,
+                                                                    MeterRegistry meterRegistry,
+                                                                    @Qualifier("scanListenerPool") ListenerPool pool) {
+        return listenerContainerFactory(configurer, connectionFactory, rpcCompression, meterRegistry, pool);
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory writeListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                    ConnectionFactory connectionFactory,
+                                                                    RpcCompression rpcCompression,
+                                                                    MeterRegistry meterRegistry,
+                                                                    @Qualifier("writeListenerPool") ListenerPool pool) {
+        return listenerContainerFactory(configurer, connectionFactory, rpcCompression, meterRegistry, pool);
+    }
+
+    private static SimpleRabbitListenerContainerFactory listenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                                 ConnectionFactory connectionFactory,
+                                                                                 RpcCompression rpcCompression,
+                                                                                 MeterRegistry meterRegistry,
+                                                                                 ListenerPool pool) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAfterReceivePostProcessors(rpcCompression::decompress);
+        factory.setReplyPostProcessorProvider(listenerId -> rpcCompression::compressReply);
+        // No max-concurrency: the container must not add consumers on its own, the autoscaler sizes it
+        factory.setConcurrentConsumers(pool.minConsumers());
+        factory.setMaxConcurrentConsumers(null);
+        factory.setPrefetchCount(pool.prefetch());
+        factory.setAdviceChain(new ListenerTiming(meterRegistry, pool.listenerId()));
+        factory.setContainerCustomizer(container -> container.setConsumerArguments(Map.of("x-priority", pool.priority())));
+        return factory;
+    }
+
+    @Bean
+    public ListenerAutoscaler listenerAutoscaler(RabbitListenerEndpointRegistry registry,
+                                                 AmqpAdmin amqpAdmin,
+                                                 MeterRegistry meterRegistry,
+                                                 @Value("${rpc.listener.autoscale.interval}") Duration interval,
+                                                 @Value("${rpc.listener.autoscale.target-drain-time}") Duration targetDrainTime,
+                                                 @Value("${rpc.listener.autoscale.idle-utilization}") double idleUtilization,
+                                                 List<ListenerPool> pools) {
+        return new ListenerAutoscaler(registry, amqpAdmin, meterRegistry, interval, targetDrainTime, idleUtilization, pools);
     }
 
     @Bean
@@ -35,7 +152,7 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public AmqpTemplate amqpTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
         rabbitTemplate.setMessageConverter(converter());
         return rabbitTemplate;
@@ -0,0 +1,34 @@
+package com.mikkkkkkka.owner.config;
+
+import com.mikkkkkkka.common.tracing.FileSpanHandler;
+import com.mikkkkkkka.common.tracing.InMemorySpanHandler;
+import com.mikkkkkkka.common.tracing.TracesEndpoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+// Finished spans go to a local JSON-lines file or stay in memory, no collector needed
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.exporter", havingValue = "file")
+    public FileSpanHandler fileSpanHandler(@Value("${tracing.file}") Path file) {
+        return new FileSpanHandler(file);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.exporter", havingValue = "memory")
+    public InMemorySpanHandler inMemorySpanHandler(@Value("${tracing.memory.capacity}") int capacity) {
+        return new InMemorySpanHandler(capacity);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.exporter", havingValue = "memory")
+    public TracesEndpoint tracesEndpoint(InMemorySpanHandler inMemorySpanHandler) {
+        return new TracesEndpoint(inMemorySpanHandler);
+    }
+}
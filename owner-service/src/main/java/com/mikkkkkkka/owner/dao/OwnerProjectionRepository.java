@@ -0,0 +1,14 @@
+package com.mikkkkkkka.owner.dao;
+
+import com.mikkkkkkka.owner.model.entity.Owner;
+import jakarta.persistence.Tuple;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OwnerProjectionRepository {
+
+    List<Tuple> findTuples(Specification<Owner> spec, Collection<String> attributes, Sort sort, long offset, int limit);
+}
@@ -1,10 +1,39 @@
 package com.mikkkkkkka.owner.dao;
 
 import com.mikkkkkkka.owner.model.entity.Owner;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
 @Repository
-public interface OwnerRepository extends JpaRepository<Owner, Long>, JpaSpecificationExecutor<Owner> {
+public interface OwnerRepository extends JpaRepository<Owner, Long>, JpaSpecificationExecutor<Owner>, OwnerProjectionRepository {
+
+    // Filtered pages repeat a few filter shapes; the ids and counts are cached until the owners table changes
+    @Override
+    @QueryHints(value = @QueryHint(name = HINT_CACHEABLE, value = "true"), forCounting = true)
+    Page<Owner> findAll(Specification<Owner> spec, Pageable pageable);
+
+    @Query("select o.version from Owner o where o.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "100"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<Owner> streamByIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
 }
\ No newline at end of file
@@ -6,11 +6,15 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDate;
 
 @Entity
 @Table(name = "owners", schema = "service")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "owners")
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,14 +22,19 @@ import java.time.LocalDate;
 public class Owner {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "owners_seq")
+    @SequenceGenerator(name = "owners_seq", sequenceName = "owners_seq", schema = "service", allocationSize = 50)
     private Long id;
 
     private String name;
 
     private LocalDate birthday;
 
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     public OwnerDto toDto() {
-        return new OwnerDto(id, name, birthday);
+        return new OwnerDto(id, name, birthday, version);
     }
 }
\ No newline at end of file
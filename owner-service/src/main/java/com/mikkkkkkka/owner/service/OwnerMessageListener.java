@@ -1,109 +1,180 @@
 package com.mikkkkkkka.owner.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mikkkkkkka.common.exception.ImproperUpdateException;
 import com.mikkkkkkka.common.exception.ResourceNotFoundException;
+import com.mikkkkkkka.common.exception.VersionMismatchException;
 import com.mikkkkkkka.common.model.dto.ApiResponse;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
 import com.mikkkkkkka.common.model.dto.OwnerDto;
 import com.mikkkkkkka.common.model.filter.OwnerFilter;
+import com.mikkkkkkka.common.rpc.codec.MalformedPayloadException;
+import com.mikkkkkkka.common.rpc.codec.RpcCodec;
+import com.mikkkkkkka.common.rpc.codec.RpcCodecs;
+import com.mikkkkkkka.common.rpc.request.ExportRequest;
+import com.mikkkkkkka.common.rpc.request.FetchRequest;
+import com.mikkkkkkka.common.rpc.request.IdRequest;
+import com.mikkkkkkka.common.rpc.request.OwnerBatchRequest;
+import com.mikkkkkkka.common.rpc.request.OwnerListRequest;
+import com.mikkkkkkka.common.rpc.request.UpdateOwnerRequest;
 import com.mikkkkkkka.owner.config.RabbitMQConfig;
+import com.mikkkkkkka.common.tracing.Spans;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Tracer;
 import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class OwnerMessageListener {
 
     private static final String PATH = "Owner Service";
+    private static final OwnerFilter NO_FILTER = new OwnerFilter(null, null, null);
 
     private final OwnerService ownerService;
-    private final ObjectMapper objectMapper;
+    private final RpcCodecs codecs;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
 
     @Autowired
-    public OwnerMessageListener(OwnerService ownerService, ObjectMapper objectMapper) {
+    public OwnerMessageListener(OwnerService ownerService, RpcCodecs codecs, MeterRegistry meterRegistry, Tracer tracer) {
         this.ownerService = ownerService;
-        this.objectMapper = objectMapper;
+        this.codecs = codecs;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer;
     }
 
-    @RabbitListener(queues = RabbitMQConfig.OWNER_QUEUE)
-    public ApiResponse<?> handleMessage(Message message) {
+    @RabbitListener(id = RabbitMQConfig.READ_LISTENER,
+            queues = RabbitMQConfig.OWNER_READ_QUEUE,
+            containerFactory = "readListenerContainerFactory")
+    @RabbitListener(id = RabbitMQConfig.SCAN_LISTENER,
+            queues = RabbitMQConfig.OWNER_SCAN_QUEUE,
+            containerFactory = "scanListenerContainerFactory")
+    @RabbitListener(id = RabbitMQConfig.WRITE_LISTENER,
+            queues = RabbitMQConfig.OWNER_WRITE_QUEUE,
+            containerFactory = "writeListenerContainerFactory")
+    public Message handleMessage(Message message) {
+        RpcCodec codec = codecs.forContentType(message.getMessageProperties().getContentType());
+        String action = message.getMessageProperties().getHeader("action");
+        long start = System.nanoTime();
+        // the listener observation continues the gateway's trace, SQL spans nest under this one
+        ApiResponse<?> response = Spans.inSpan(tracer, "rpc handle", action, () -> handle(codec, message));
+        record(action, response.status(), System.nanoTime() - start);
+        return Spans.inSpan(tracer, "rpc encode", action, () -> MessageBuilder.withBody(codec.encode(response))
+                .setContentType(codec.contentType())
+                .build());
+    }
+
+    // Decoding and the service call, per action and reply status
+    private void record(String action, int status, long nanos) {
+        Timer.builder("rpc.server.requests")
+                .tag("action", action == null ? "none" : action)
+                .tag("status", String.valueOf(status))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private ApiResponse<?> handle(RpcCodec codec, Message message) {
         try {
             String action = message.getMessageProperties().getHeader("action");
-            String payload = new String(message.getBody());
+            byte[] payload = message.getBody();
 
             return switch (action) {
-                case "CREATE_OWNER" -> handleCreateOwner(payload);
-                case "GET_OWNER_BY_ID" -> handleGetOwnerById(payload);
-                case "UPDATE_OWNER" -> handleUpdateOwner(payload);
-                case "DELETE_OWNER" -> handleDeleteOwner(payload);
-                case "GET_ALL_OWNERS" -> handleGetAllOwners(payload);
-                case "GET_ALL_OWNERS_FILTERED" -> handleGetAllOwnersFiltered(payload);
+                case "CREATE_OWNER" -> handleCreateOwner(codec.decode(payload, OwnerDto.class));
+                case "CREATE_OWNERS" -> handleCreateOwners(codec.decode(payload, OwnerBatchRequest.class));
+                case "GET_OWNER_BY_ID" -> handleGetOwnerById(codec.decode(payload, FetchRequest.class));
+                case "GET_OWNER_VERSION" -> handleGetOwnerVersion(codec.decode(payload, IdRequest.class));
+                case "UPDATE_OWNER" -> handleUpdateOwner(codec.decode(payload, UpdateOwnerRequest.class));
+                case "UPDATE_OWNERS" -> handleUpdateOwners(codec.decode(payload, OwnerBatchRequest.class));
+                case "DELETE_OWNER" -> handleDeleteOwner(codec.decode(payload, IdRequest.class));
+                case "GET_ALL_OWNERS" -> handleGetAllOwners(codec.decode(payload, OwnerListRequest.class));
+                case "GET_ALL_OWNERS_FILTERED" -> handleGetAllOwnersFiltered(codec.decode(payload, OwnerListRequest.class));
+                case "EXPORT_OWNERS" -> handleExportOwners(codec.decode(payload, ExportRequest.class));
                 default -> throw new RuntimeException("Unknown action: " + action);
             };
-        } catch (JsonProcessingException | IllegalArgumentException exception) {
-            return new ApiResponse<>(400, "Invalid payload", PATH, exception);
+        } catch (MalformedPayloadException exception) {
+            return new ApiResponse<>(400, "Invalid payload", PATH, null);
+        } catch (IllegalArgumentException exception) {
+            return new ApiResponse<>(400, exception.getMessage(), PATH, null);
+        } catch (VersionMismatchException exception) {
+            return new ApiResponse<>(412, exception.getMessage(), PATH, null);
+        } catch (ObjectOptimisticLockingFailureException exception) {
+            return new ApiResponse<>(412, "Owner was modified concurrently", PATH, null);
         } catch (ResourceNotFoundException exception) {
-            return new ApiResponse<>(404, exception.getMessage(), PATH, exception);
+            return new ApiResponse<>(404, exception.getMessage(), PATH, null);
         } catch (ImproperUpdateException exception) {
-            return new ApiResponse<>(400, exception.getMessage(), PATH, exception);
+            return new ApiResponse<>(400, exception.getMessage(), PATH, null);
         } catch (Exception exception) {
-            return new ApiResponse<>(500, exception.getMessage(), PATH, exception);
+            return new ApiResponse<>(500, exception.getMessage(), PATH, null);
         }
     }
 
-    private ApiResponse<?> handleCreateOwner(String payload) throws JsonProcessingException {
-        OwnerDto newOwner = objectMapper.readValue(payload, OwnerDto.class);
+    private ApiResponse<?> handleCreateOwner(OwnerDto newOwner) {
         OwnerDto owner = ownerService.createOwner(newOwner);
         return ApiResponse.ok(PATH, owner);
     }
 
-    private ApiResponse<?> handleGetOwnerById(String payload) throws JsonProcessingException, ResourceNotFoundException {
-        long id = objectMapper.readValue(payload, Long.class);
-        OwnerDto owner = ownerService.getOwner(id);
+    private ApiResponse<?> handleCreateOwners(OwnerBatchRequest request) {
+        List<BatchItemResult<OwnerDto>> results = ownerService.createOwners(request.owners());
+        return ApiResponse.ok(PATH, results);
+    }
+
+    private ApiResponse<?> handleGetOwnerById(FetchRequest request) throws ResourceNotFoundException {
+        if (request.fields() != null)
+            return ApiResponse.ok(PATH, ownerService.getOwnerProjected(request.id(), request.fields()));
+        OwnerDto owner = ownerService.getOwner(request.id());
         return ApiResponse.ok(PATH, owner);
     }
 
-    private ApiResponse<?> handleUpdateOwner(String payload) throws JsonProcessingException, IllegalArgumentException, ResourceNotFoundException, ImproperUpdateException {
-        Map<String, Object> updateData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        long id = Long.parseLong(updateData.get("id").toString());
-        OwnerDto ownerDetails = objectMapper.convertValue(updateData.get("owner"), OwnerDto.class);
-        OwnerDto owner = ownerService.updateOwner(id, ownerDetails);
+    private ApiResponse<?> handleGetOwnerVersion(IdRequest request) {
+        Long version = ownerService.getOwnerVersion(request.id()).orElse(null);
+        return ApiResponse.ok(PATH, version);
+    }
+
+    private ApiResponse<?> handleUpdateOwner(UpdateOwnerRequest request) throws ResourceNotFoundException, ImproperUpdateException {
+        OwnerDto owner = ownerService.updateOwner(request.id(), request.owner());
         return ApiResponse.ok(PATH, owner);
     }
 
-    private ApiResponse<?> handleDeleteOwner(String payload) throws JsonProcessingException {
-        Long deleteId = objectMapper.readValue(payload, Long.class);
-        ownerService.deleteOwnerById(deleteId);
+    private ApiResponse<?> handleUpdateOwners(OwnerBatchRequest request) {
+        List<BatchItemResult<OwnerDto>> results = ownerService.updateOwners(request.owners());
+        return ApiResponse.ok(PATH, results);
+    }
+
+    private ApiResponse<?> handleDeleteOwner(IdRequest request) {
+        ownerService.deleteOwnerById(request.id());
         return ApiResponse.ok(PATH, null);
     }
 
-    private ApiResponse<?> handleGetAllOwners(String payload) throws JsonProcessingException {
-        Map<String, Object> getAllData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        int page = Integer.parseInt(getAllData.get("page").toString());
-        int size = Integer.parseInt(getAllData.get("size").toString());
-        List<OwnerDto> owners = ownerService.getAllOwners(PageRequest.of(page, size));
+    private ApiResponse<?> handleGetAllOwners(OwnerListRequest request) throws IllegalArgumentException {
+        if (request.sort() != null)
+            return ApiResponse.ok(PATH, ownerService.getAllOwners(request.sort(), request.after(), request.size()));
+        List<OwnerDto> owners = ownerService.getAllOwners(PageRequest.of(request.page(), request.size()));
+        return ApiResponse.ok(PATH, owners);
+    }
+
+    private ApiResponse<?> handleGetAllOwnersFiltered(OwnerListRequest request) throws IllegalArgumentException {
+        OwnerFilter filter = request.filter() == null ? NO_FILTER : request.filter();
+        if (filter.fields() != null)
+            return request.sort() != null
+                    ? ApiResponse.ok(PATH, ownerService.getAllOwnersProjected(filter, request.sort(), request.after(), request.size()))
+                    : ApiResponse.ok(PATH, ownerService.getAllOwnersProjected(filter, PageRequest.of(request.page(), request.size())));
+        if (request.sort() != null)
+            return ApiResponse.ok(PATH, ownerService.getAllOwnersFiltered(filter, request.sort(), request.after(), request.size()));
+        List<OwnerDto> owners = ownerService.getAllOwnersFiltered(filter, PageRequest.of(request.page(), request.size()));
         return ApiResponse.ok(PATH, owners);
     }
 
-    private ApiResponse<?> handleGetAllOwnersFiltered(String payload) throws JsonProcessingException {
-        Map<String, Object> getAllData = objectMapper.readValue(payload,
-                new TypeReference<>() {
-                });
-        int page = Integer.parseInt(getAllData.get("page").toString());
-        int size = Integer.parseInt(getAllData.get("size").toString());
-        OwnerFilter filter = objectMapper.convertValue(getAllData.get("filter"), OwnerFilter.class);
-        List<OwnerDto> owners = ownerService.getAllOwnersFiltered(filter, PageRequest.of(page, size));
+    private ApiResponse<?> handleExportOwners(ExportRequest request) throws IllegalArgumentException {
+        List<OwnerDto> owners = ownerService.exportOwners(request.afterId(), request.limit());
         return ApiResponse.ok(PATH, owners);
     }
-}
\ No newline at end of file
+}
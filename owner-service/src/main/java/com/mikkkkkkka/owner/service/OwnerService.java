@@ -2,19 +2,30 @@ package com.mikkkkkkka.owner.service;
 
 import com.mikkkkkkka.common.exception.ImproperUpdateException;
 import com.mikkkkkkka.common.exception.ResourceNotFoundException;
+import com.mikkkkkkka.common.exception.VersionMismatchException;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
+import com.mikkkkkkka.common.model.dto.CursorPage;
 import com.mikkkkkkka.common.model.dto.OwnerDto;
 import com.mikkkkkkka.common.model.filter.OwnerFilter;
 import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface OwnerService {
 
     OwnerDto createOwner(OwnerDto owner);
 
+    List<BatchItemResult<OwnerDto>> createOwners(List<OwnerDto> owners);
+
     OwnerDto getOwner(long id) throws ResourceNotFoundException;
 
-    OwnerDto updateOwner(long id, OwnerDto owner) throws ResourceNotFoundException, ImproperUpdateException;
+    Optional<Long> getOwnerVersion(long id);
+
+    OwnerDto updateOwner(long id, OwnerDto owner) throws ResourceNotFoundException, ImproperUpdateException, VersionMismatchException;
+
+    List<BatchItemResult<OwnerDto>> updateOwners(List<OwnerDto> owners);
 
     void deleteOwnerByDto(OwnerDto owner);
 
@@ -23,4 +34,16 @@ public interface OwnerService {
     List<OwnerDto> getAllOwners(Pageable pageable);
 
     List<OwnerDto> getAllOwnersFiltered(OwnerFilter filter, Pageable pageable);
+
+    CursorPage<OwnerDto> getAllOwners(String sort, String after, int size);
+
+    CursorPage<OwnerDto> getAllOwnersFiltered(OwnerFilter filter, String sort, String after, int size);
+
+    List<Map<String, Object>> getAllOwnersProjected(OwnerFilter filter, Pageable pageable);
+
+    CursorPage<Map<String, Object>> getAllOwnersProjected(OwnerFilter filter, String sort, String after, int size);
+
+    Map<String, Object> getOwnerProjected(long id, List<String> fields) throws ResourceNotFoundException;
+
+    List<OwnerDto> exportOwners(long afterId, int limit);
 }
\ No newline at end of file
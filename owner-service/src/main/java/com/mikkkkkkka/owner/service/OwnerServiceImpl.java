@@ -2,22 +2,53 @@ package com.mikkkkkkka.owner.service;
 
 import com.mikkkkkkka.common.exception.ImproperUpdateException;
 import com.mikkkkkkka.common.exception.ResourceNotFoundException;
+import com.mikkkkkkka.common.exception.VersionMismatchException;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
+import com.mikkkkkkka.common.model.dto.CursorPage;
 import com.mikkkkkkka.common.model.dto.OwnerDto;
 import com.mikkkkkkka.common.model.filter.OwnerFilter;
+import com.mikkkkkkka.common.model.pagination.PageCursor;
 import com.mikkkkkkka.owner.dao.OwnerRepository;
 import com.mikkkkkkka.owner.model.entity.Owner;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OwnerServiceImpl implements OwnerService {
 
+    private static final int MAX_EXPORT_CHUNK = 1000;
+    private static final int MAX_BATCH_SIZE = 1000;
+    // varchar(255) in the schema
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private static final Set<String> CURSOR_SORTS = Set.of("id", "name", "birthday");
+    private static final List<String> OWNER_FIELDS = List.of("id", "name", "birthday", "version");
+
     private final OwnerRepository ownerRepo;
 
     @Autowired
@@ -27,13 +58,53 @@ public class OwnerServiceImpl implements OwnerService {
 
     @Override
     public OwnerDto createOwner(OwnerDto owner) {
-        Owner ownerEntity = Owner.builder()
+        Owner ownerEntity = newOwner(owner);
+        ownerRepo.save(ownerEntity);
+        return ownerEntity.toDto();
+    }
+
+    @Transactional
+    @Override
+    public List<BatchItemResult<OwnerDto>> createOwners(List<OwnerDto> owners) {
+        checkBatchSize(owners);
+        List<BatchItemResult<OwnerDto>> results = new ArrayList<>(owners.size());
+        Map<Integer, Owner> inserts = new LinkedHashMap<>();
+        for (int i = 0; i < owners.size(); i++) {
+            String error = newOwnerError(owners.get(i));
+            results.add(error == null ? null : BatchItemResult.error(i, 400, error));
+            if (error == null)
+                inserts.put(i, newOwner(owners.get(i)));
+        }
+
+        List<Owner> savedOwners = ownerRepo.saveAll(inserts.values());
+        ownerRepo.flush();
+        int saved = 0;
+        for (int index : inserts.keySet())
+            results.set(index, BatchItemResult.ok(index, savedOwners.get(saved++).toDto()));
+        return results;
+    }
+
+    // Checked one by one before anything is written, a row the database rejects would roll back the whole batch
+    private static String newOwnerError(OwnerDto owner) {
+        if (owner == null)
+            return "Owner is required";
+        if (owner.id() != null)
+            return "A new owner cannot have an id";
+        return columnError(owner);
+    }
+
+    private static String columnError(OwnerDto owner) {
+        if (owner.name() != null && owner.name().length() > MAX_TEXT_LENGTH)
+            return "Owner name must not exceed " + MAX_TEXT_LENGTH + " characters";
+        return null;
+    }
+
+    private static Owner newOwner(OwnerDto owner) {
+        return Owner.builder()
                 .id(null)
                 .name(owner.name())
                 .birthday(owner.birthday())
                 .build();
-        ownerRepo.save(ownerEntity);
-        return ownerEntity.toDto();
     }
 
     @Override
@@ -44,22 +115,86 @@ public class OwnerServiceImpl implements OwnerService {
     }
 
     @Override
-    public OwnerDto updateOwner(long id, OwnerDto owner) throws ResourceNotFoundException, ImproperUpdateException {
+    public Optional<Long> getOwnerVersion(long id) {
+        return ownerRepo.findVersionById(id);
+    }
+
+    @Override
+    public OwnerDto updateOwner(long id, OwnerDto owner) throws ResourceNotFoundException, ImproperUpdateException, VersionMismatchException {
         final Owner originalOwner = ownerRepo.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Owner not found"));
+        return ownerRepo.save(applyUpdate(originalOwner, id, owner)).toDto();
+    }
 
+    @Transactional
+    @Override
+    public List<BatchItemResult<OwnerDto>> updateOwners(List<OwnerDto> owners) {
+        checkBatchSize(owners);
+        Map<Long, Owner> originalOwners = ownerRepo.findAllById(owners.stream()
+                        .filter(Objects::nonNull)
+                        .map(OwnerDto::id)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(Owner::getId, Function.identity()));
+
+        List<BatchItemResult<OwnerDto>> results = new ArrayList<>(owners.size());
+        Map<Integer, Owner> updates = new LinkedHashMap<>();
+        Set<Long> seenIds = new HashSet<>();
+        for (int i = 0; i < owners.size(); i++) {
+            OwnerDto owner = owners.get(i);
+            results.add(null);
+            if (owner == null) {
+                results.set(i, BatchItemResult.error(i, 400, "Owner is required"));
+            } else if (owner.id() == null) {
+                results.set(i, BatchItemResult.error(i, 400, "Owner id is required"));
+            } else if (!seenIds.add(owner.id())) {
+                results.set(i, BatchItemResult.error(i, 400, "Owner " + owner.id() + " appears twice in the batch"));
+            } else if (!originalOwners.containsKey(owner.id())) {
+                results.set(i, BatchItemResult.error(i, 404, "Owner not found"));
+            } else if (columnError(owner) != null) {
+                results.set(i, BatchItemResult.error(i, 400, columnError(owner)));
+            } else {
+                try {
+                    updates.put(i, applyUpdate(originalOwners.get(owner.id()), owner.id(), owner));
+                } catch (VersionMismatchException exception) {
+                    results.set(i, BatchItemResult.error(i, 412, exception.getMessage()));
+                } catch (ImproperUpdateException exception) {
+                    results.set(i, BatchItemResult.error(i, 400, exception.getMessage()));
+                }
+            }
+        }
+
+        List<Owner> savedOwners = ownerRepo.saveAll(updates.values());
+        ownerRepo.flush();
+        int saved = 0;
+        for (int index : updates.keySet())
+            results.set(index, BatchItemResult.ok(index, savedOwners.get(saved++).toDto()));
+        return results;
+    }
+
+    private Owner applyUpdate(Owner originalOwner, long id, OwnerDto owner) throws ImproperUpdateException, VersionMismatchException {
         final boolean idModified = owner.id() != null &&
                 !originalOwner.getId().equals(owner.id());
         if (idModified)
             throw new ImproperUpdateException(
                     "Cannot update owner Id");
+        if (owner.version() != null && !owner.version().equals(originalOwner.getVersion()))
+            throw new VersionMismatchException(
+                    "Owner was modified since version " + owner.version());
 
-        Owner ownerEntity = Owner.builder()
+        return Owner.builder()
                 .id(id)
                 .name(owner.name())
                 .birthday(owner.birthday())
+                .version(originalOwner.getVersion())
                 .build();
-        return ownerRepo.save(ownerEntity).toDto();
+    }
+
+    private static void checkBatchSize(List<OwnerDto> owners) {
+        if (owners.size() > MAX_BATCH_SIZE)
+            throw new IllegalArgumentException("Batch size must not exceed " + MAX_BATCH_SIZE);
     }
 
     @Override
@@ -89,6 +224,199 @@ public class OwnerServiceImpl implements OwnerService {
                 .toList();
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public List<OwnerDto> exportOwners(long afterId, int limit) {
+        if (limit < 1 || limit > MAX_EXPORT_CHUNK)
+            throw new IllegalArgumentException("Export chunk size must be between 1 and " + MAX_EXPORT_CHUNK);
+        try (Stream<Owner> owners = ownerRepo.streamByIdGreaterThanOrderByIdAsc(afterId, Limit.of(limit))) {
+            return owners.map(Owner::toDto)
+                    .toList();
+        }
+    }
+
+    @Override
+    public CursorPage<OwnerDto> getAllOwners(String sort, String after, int size) {
+        return getAllOwnersFiltered(new OwnerFilter(null, null, null), sort, after, size);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPage<OwnerDto> getAllOwnersFiltered(OwnerFilter filter, String sort, String after, int size) {
+        PageCursor cursor = checkCursor(sort, after, size);
+        List<Owner> owners = seek(buildSpecification(filter), sort, cursor, size, this::findPage);
+        List<OwnerDto> items = owners.stream()
+                .map(Owner::toDto)
+                .toList();
+        String next = items.size() < size ? null : cursorOf(sort, owners.get(owners.size() - 1)).encode();
+        return new CursorPage<>(items, next);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<Map<String, Object>> getAllOwnersProjected(OwnerFilter filter, Pageable pageable) {
+        List<String> fields = checkFields(filter.fields());
+        List<Tuple> owners = ownerRepo.findTuples(buildSpecification(filter),
+                columnsOf(fields),
+                pageable.getSort(),
+                pageable.getOffset(),
+                pageable.getPageSize());
+        return toRows(owners, fields);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPage<Map<String, Object>> getAllOwnersProjected(OwnerFilter filter, String sort, String after, int size) {
+        List<String> fields = checkFields(filter.fields());
+        PageCursor cursor = checkCursor(sort, after, size);
+        // the sort key is read even when not requested, the next cursor is built from it
+        Set<String> columns = columnsOf(fields, sort);
+        List<Tuple> owners = seek(buildSpecification(filter), sort, cursor, size,
+                (spec, order, limit) -> ownerRepo.findTuples(spec, columns, order, 0, limit));
+        String next = owners.size() < size ? null : cursorOf(sort, owners.get(owners.size() - 1)).encode();
+        return new CursorPage<>(toRows(owners, fields), next);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Map<String, Object> getOwnerProjected(long id, List<String> fields) throws ResourceNotFoundException {
+        List<String> checkedFields = checkFields(fields);
+        Specification<Owner> byId = (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("id"), id);
+        List<Tuple> owners = ownerRepo.findTuples(byId, columnsOf(checkedFields), Sort.unsorted(), 0, 1);
+        if (owners.isEmpty())
+            throw new ResourceNotFoundException("Owner not found");
+        return toRows(owners, checkedFields).get(0);
+    }
+
+    private static List<String> checkFields(List<String> fields) {
+        if (fields == null)
+            throw new IllegalArgumentException("Field set is required");
+        for (String field : fields)
+            if (!OWNER_FIELDS.contains(field))
+                throw new IllegalArgumentException("Unknown owner field: " + field);
+        return fields;
+    }
+
+    private static Set<String> columnsOf(List<String> fields, String... extra) {
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add("id");
+        columns.addAll(fields);
+        columns.addAll(List.of(extra));
+        return columns;
+    }
+
+    private static List<Map<String, Object>> toRows(List<Tuple> owners, List<String> fields) {
+        List<Map<String, Object>> rows = new ArrayList<>(owners.size());
+        for (Tuple owner : owners) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", owner.get("id"));
+            for (String field : OWNER_FIELDS)
+                if (!field.equals("id") && fields.contains(field))
+                    row.put(field, owner.get(field));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static PageCursor checkCursor(String sort, String after, int size) {
+        if (!CURSOR_SORTS.contains(sort))
+            throw new IllegalArgumentException("Unsupported sort: " + sort);
+        if (size < 1)
+            throw new IllegalArgumentException("Page size must be positive");
+        PageCursor cursor = after == null || after.isEmpty() ? null : PageCursor.decode(after);
+        if (cursor != null && !cursor.sort().equals(sort))
+            throw new IllegalArgumentException("Cursor was issued for sort " + cursor.sort());
+        // checked here, the specifications parse it again inside the repository call
+        if (cursor != null && sort.equals("birthday") && cursor.key() != null)
+            birthdayKey(cursor);
+        return cursor;
+    }
+
+    private static LocalDate birthdayKey(PageCursor cursor) {
+        try {
+            return LocalDate.parse(cursor.key());
+        } catch (DateTimeParseException exception) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    @FunctionalInterface
+    private interface PageQuery<R> {
+        List<R> find(Specification<Owner> spec, Sort sort, int limit);
+    }
+
+    private static <R> List<R> seek(Specification<Owner> spec, String sort, PageCursor cursor, int size, PageQuery<R> query) {
+        List<R> owners = new ArrayList<>();
+        if (sort.equals("id")) {
+            owners.addAll(query.find(spec.and(idAfter(cursor)), Sort.by("id"), size));
+        } else {
+            // rows with a null sort key come last and are paged by id alone
+            if (cursor == null || cursor.key() != null)
+                owners.addAll(query.find(spec.and(keyAfter(sort, cursor)), Sort.by(sort, "id"), size));
+            if (owners.size() < size)
+                owners.addAll(query.find(spec.and(nullKeyAfter(sort, cursor)), Sort.by("id"), size - owners.size()));
+        }
+        return owners;
+    }
+
+    private List<Owner> findPage(Specification<Owner> spec, Sort sort, int limit) {
+        return ownerRepo.findBy(spec, query -> query.sortBy(sort).limit(limit).all());
+    }
+
+    private static PageCursor cursorOf(String sort, Owner owner) {
+        Object key = switch (sort) {
+            case "name" -> owner.getName();
+            case "birthday" -> owner.getBirthday();
+            default -> null;
+        };
+        return new PageCursor(sort, key == null ? null : key.toString(), owner.getId());
+    }
+
+    private static PageCursor cursorOf(String sort, Tuple owner) {
+        Object key = sort.equals("id") ? null : owner.get(sort);
+        return new PageCursor(sort, key == null ? null : key.toString(), owner.get("id", Long.class));
+    }
+
+    private static Specification<Owner> idAfter(PageCursor cursor) {
+        return (root, query, criteriaBuilder) -> cursor == null
+                ? criteriaBuilder.conjunction()
+                : criteriaBuilder.greaterThan(root.get("id"), cursor.id());
+    }
+
+    private static Specification<Owner> keyAfter(String sort, PageCursor cursor) {
+        return (root, query, criteriaBuilder) -> switch (sort) {
+            case "name" -> keyAfter(criteriaBuilder, root, root.get("name"),
+                    cursor == null ? null : cursor.key(), cursor);
+            case "birthday" -> keyAfter(criteriaBuilder, root, root.get("birthday"),
+                    cursor == null ? null : birthdayKey(cursor), cursor);
+            default -> throw new IllegalArgumentException("Unsupported sort: " + sort);
+        };
+    }
+
+    // (key, id) > (lastKey, lastId), spelled so that an index on (key, id) gives a range scan
+    private static <Y extends Comparable<? super Y>> Predicate keyAfter(CriteriaBuilder criteriaBuilder,
+                                                                        Root<Owner> root,
+                                                                        Expression<Y> key,
+                                                                        Y lastKey,
+                                                                        PageCursor cursor) {
+        if (cursor == null)
+            return criteriaBuilder.isNotNull(key);
+        return criteriaBuilder.and(
+                criteriaBuilder.greaterThanOrEqualTo(key, lastKey),
+                criteriaBuilder.or(
+                        criteriaBuilder.greaterThan(key, lastKey),
+                        criteriaBuilder.greaterThan(root.get("id"), cursor.id())));
+    }
+
+    private static Specification<Owner> nullKeyAfter(String sort, PageCursor cursor) {
+        return (root, query, criteriaBuilder) -> {
+            Predicate nullKey = criteriaBuilder.isNull(root.get(sort));
+            if (cursor == null || cursor.key() != null)
+                return nullKey;
+            return criteriaBuilder.and(nullKey, criteriaBuilder.greaterThan(root.get("id"), cursor.id()));
+        };
+    }
+
     private Specification<Owner> buildSpecification(OwnerFilter filter) {
         return (root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
@@ -0,0 +1,7 @@
+-- The schema ddl-auto=update created before migrations were introduced; existing databases are baselined at this version
+create table service.owners (
+    id       bigint generated by default as identity,
+    name     varchar(255),
+    birthday date,
+    primary key (id)
+);
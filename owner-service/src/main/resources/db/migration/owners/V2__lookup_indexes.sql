@@ -0,0 +1,4 @@
+-- Keyset pages by name, birthday filters and pages by birthday.
+-- Databases that ran ddl-auto after keyset pagination came in already have them.
+create index if not exists owners_name_id_idx on service.owners (name, id);
+create index if not exists owners_birthday_id_idx on service.owners (birthday, id);
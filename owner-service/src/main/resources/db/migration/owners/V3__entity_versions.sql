@@ -0,0 +1,3 @@
+-- Optimistic locking and ETags read this version, existing rows start at 0
+alter table service.owners
+    add column if not exists version bigint default 0 not null;
@@ -1,23 +1,65 @@
 package com.mikkkkkkka.gateway.config;
 
-import org.springframework.amqp.core.AmqpTemplate;
+import com.mikkkkkkka.common.rpc.codec.RpcCodec;
+import com.mikkkkkkka.common.rpc.codec.RpcCodecs;
+import com.mikkkkkkka.common.rpc.compression.RpcCompression;
+import com.mikkkkkkka.gateway.rpc.ActionRouter;
+import com.mikkkkkkka.gateway.rpc.CircuitBreaker;
+import com.mikkkkkkka.gateway.rpc.RpcClient;
+import com.mikkkkkkka.gateway.rpc.RpcReplyListener;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Base64UrlNamingStrategy;
+import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
-import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.Set;
+
 @Configuration
 public class RabbitMQConfig {
-    public static final String CAT_QUEUE = "cat_queue";
     public static final String CAT_EXCHANGE = "cat_exchange";
-    public static final String CAT_ROUTING_KEY = "cat_routing_key";
+    public static final String CAT_READ_ROUTING_KEY = "cat.read";
+    public static final String CAT_SCAN_ROUTING_KEY = "cat.scan";
+    public static final String CAT_WRITE_ROUTING_KEY = "cat.write";
 
-    public static final String OWNER_QUEUE = "owner_queue";
     public static final String OWNER_EXCHANGE = "owner_exchange";
-    public static final String OWNER_ROUTING_KEY = "owner_routing_key";
+    public static final String OWNER_READ_ROUTING_KEY = "owner.read";
+    public static final String OWNER_SCAN_ROUTING_KEY = "owner.scan";
+    public static final String OWNER_WRITE_ROUTING_KEY = "owner.write";
+
+    // Point reads by key and scans over filters or ranges; every other action is a write
+    private static final Set<String> CAT_READS = Set.of("GET_CAT_BY_ID",
+            "GET_CAT_VERSION",
+            "GET_CAT_VERSION_IF_OWNED",
+            "GET_CAT_IF_OWNED",
+            "GET_CATS_BY_OWNER_ID",
+            "GET_CATS_BY_OWNER_IDS",
+            "OWNER_OWNS_CAT",
+            "GET_MUTUAL_FRIENDS",
+            "GET_FRIENDS_WITHIN",
+            "GET_FRIENDSHIP_PATH",
+            "GET_FRIEND_COMPONENT");
+    private static final Set<String> CAT_SCANS = Set.of("GET_ALL_CATS",
+            "GET_ALL_CATS_FILTERED",
+            "EXPORT_CATS");
+    private static final Set<String> OWNER_READS = Set.of("GET_OWNER_BY_ID",
+            "GET_OWNER_VERSION");
+    private static final Set<String> OWNER_SCANS = Set.of("GET_ALL_OWNERS",
+            "GET_ALL_OWNERS_FILTERED",
+            "EXPORT_OWNERS");
+
+    public static final String REPLY_QUEUE_PREFIX = "gateway.reply.";
 
     @Bean
     public TopicExchange catExchange() {
@@ -30,14 +72,147 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public MessageConverter converter() {
-        return new Jackson2JsonMessageConverter();
+    public Queue replyQueue() {
+        return new AnonymousQueue(new Base64UrlNamingStrategy(REPLY_QUEUE_PREFIX));
+    }
+
+    @Bean
+    public RpcCompression rpcCompression(@Value("${gateway.rpc.compression.threshold}") int threshold,
+                                         MeterRegistry meterRegistry) {
+        return new RpcCompression(threshold, meterRegistry);
     }
 
+    // Named and typed so that Boot's own template backs off and the RPC clients get this one
     @Bean
-    public AmqpTemplate amqpTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, RpcCompression rpcCompression) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
-        rabbitTemplate.setMessageConverter(converter());
+        rabbitTemplate.setBeforePublishPostProcessors(rpcCompression::compressRequest);
+        // Injects the trace context into the message headers for the services' listener observation
+        rabbitTemplate.setObservationEnabled(true);
         return rabbitTemplate;
     }
-}
\ No newline at end of file
+
+    @Bean
+    public RpcCodecs rpcCodecs() {
+        return new RpcCodecs();
+    }
+
+    @Bean
+    public RpcCodec rpcCodec(RpcCodecs rpcCodecs, @Value("${gateway.rpc.codec}") String codec) {
+        return rpcCodecs.byName(codec);
+    }
+
+    @Bean
+    public RpcReplyListener rpcReplyListener(MeterRegistry meterRegistry) {
+        RpcReplyListener rpcReplyListener = new RpcReplyListener();
+        Gauge.builder("gateway.rpc.pending-replies", rpcReplyListener, RpcReplyListener::pendingCount)
+                .description("Replies awaited by all clients, each holding a scheduled timeout")
+                .register(meterRegistry);
+        return rpcReplyListener;
+    }
+
+    @Bean
+    public SimpleMessageListenerContainer replyListenerContainer(ConnectionFactory connectionFactory,
+                                                                 Queue replyQueue,
+                                                                 RpcReplyListener rpcReplyListener,
+                                                                 RpcCompression rpcCompression,
+                                                                 @Value("${gateway.rpc.reply-consumers}") int replyConsumers) {
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueues(replyQueue);
+        container.setAfterReceivePostProcessors(rpcCompression::decompress);
+        container.setMessageListener(rpcReplyListener);
+        container.setAcknowledgeMode(AcknowledgeMode.NONE);
+        container.setConcurrentConsumers(replyConsumers);
+        return container;
+    }
+
+    @Bean
+    public CircuitBreaker catCircuitBreaker(@Value("${gateway.rpc.cat.breaker.failure-rate-threshold}") int failureRateThreshold,
+                                            @Value("${gateway.rpc.cat.breaker.slow-call-rate-threshold}") int slowCallRateThreshold,
+                                            @Value("${gateway.rpc.cat.breaker.slow-call-duration}") Duration slowCallDuration,
+                                            @Value("${gateway.rpc.cat.breaker.open-duration}") Duration openDuration,
+                                            @Value("${gateway.rpc.cat.breaker.window-size}") int windowSize,
+                                            @Value("${gateway.rpc.cat.breaker.minimum-calls}") int minimumCalls,
+                                            @Value("${gateway.rpc.cat.breaker.half-open-probes}") int halfOpenProbes) {
+        return new CircuitBreaker(failureRateThreshold,
+                slowCallRateThreshold,
+                slowCallDuration,
+                openDuration,
+                windowSize,
+                minimumCalls,
+                halfOpenProbes);
+    }
+
+    @Bean
+    public CircuitBreaker ownerCircuitBreaker(@Value("${gateway.rpc.owner.breaker.failure-rate-threshold}") int failureRateThreshold,
+                                              @Value("${gateway.rpc.owner.breaker.slow-call-rate-threshold}") int slowCallRateThreshold,
+                                              @Value("${gateway.rpc.owner.breaker.slow-call-duration}") Duration slowCallDuration,
+                                              @Value("${gateway.rpc.owner.breaker.open-duration}") Duration openDuration,
+                                              @Value("${gateway.rpc.owner.breaker.window-size}") int windowSize,
+                                              @Value("${gateway.rpc.owner.breaker.minimum-calls}") int minimumCalls,
+                                              @Value("${gateway.rpc.owner.breaker.half-open-probes}") int halfOpenProbes) {
+        return new CircuitBreaker(failureRateThreshold,
+                slowCallRateThreshold,
+                slowCallDuration,
+                openDuration,
+                windowSize,
+                minimumCalls,
+                halfOpenProbes);
+    }
+
+    @Bean
+    public RpcClient catRpcClient(RabbitTemplate rabbitTemplate,
+                                  Queue replyQueue,
+                                  RpcReplyListener rpcReplyListener,
+                                  @Value("${gateway.rpc.cat.max-in-flight}") int maxInFlight,
+                                  @Value("${gateway.rpc.cat.reply-timeout}") Duration replyTimeout,
+                                  @Qualifier("catCircuitBreaker") CircuitBreaker circuitBreaker,
+                                  RpcCodec rpcCodec,
+                                  RpcCodecs rpcCodecs,
+                                  MeterRegistry meterRegistry,
+                                  Tracer tracer) {
+        return new RpcClient("Cat Service",
+                CAT_EXCHANGE,
+                new ActionRouter(CAT_READ_ROUTING_KEY, CAT_READS,
+                        CAT_SCAN_ROUTING_KEY, CAT_SCANS,
+                        CAT_WRITE_ROUTING_KEY),
+                replyQueue.getName(),
+                rabbitTemplate,
+                rpcReplyListener,
+                maxInFlight,
+                replyTimeout,
+                circuitBreaker,
+                rpcCodec,
+                rpcCodecs,
+                meterRegistry,
+                tracer);
+    }
+
+    @Bean
+    public RpcClient ownerRpcClient(RabbitTemplate rabbitTemplate,
+                                    Queue replyQueue,
+                                    RpcReplyListener rpcReplyListener,
+                                    @Value("${gateway.rpc.owner.max-in-flight}") int maxInFlight,
+                                    @Value("${gateway.rpc.owner.reply-timeout}") Duration replyTimeout,
+                                    @Qualifier("ownerCircuitBreaker") CircuitBreaker circuitBreaker,
+                                    RpcCodec rpcCodec,
+                                    RpcCodecs rpcCodecs,
+                                    MeterRegistry meterRegistry,
+                                    Tracer tracer) {
+        return new RpcClient("Owner Service",
+                OWNER_EXCHANGE,
+                new ActionRouter(OWNER_READ_ROUTING_KEY, OWNER_READS,
+                        OWNER_SCAN_ROUTING_KEY, OWNER_SCANS,
+                        OWNER_WRITE_ROUTING_KEY),
+                replyQueue.getName(),
+                rabbitTemplate,
+                rpcReplyListener,
+                maxInFlight,
+                replyTimeout,
+                circuitBreaker,
+                rpcCodec,
+                rpcCodecs,
+                meterRegistry,
+                tracer);
+    }
+}
@@ -4,94 +4,258 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.mikkkkkkka.common.model.CatColor;
 import com.mikkkkkkka.common.model.dto.CatDto;
 import com.mikkkkkkka.common.model.filter.CatFilter;
+import com.mikkkkkkka.gateway.model.UserDetailsImpl;
+import com.mikkkkkkka.gateway.rpc.RawReply;
 import com.mikkkkkkka.gateway.service.CatClientService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/cats")
 public class CatController {
 
     private final CatClientService catService;
+    private final NdjsonExport export;
 
     @Autowired
-    public CatController(CatClientService catService) {
+    public CatController(CatClientService catService,
+                         NdjsonExport export) {
         this.catService = catService;
+        this.export = export;
     }
 
     @GetMapping
-    public ResponseEntity<?> getAllCats(
+    public CompletableFuture<ResponseEntity<?>> getAllCats(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) Long ownerId,
             @RequestParam(required = false) List<CatColor> colors,
             @RequestParam(required = false) LocalDate birthdayBefore,
-            @RequestParam(required = false) LocalDate birthdayAfter
+            @RequestParam(required = false) LocalDate birthdayAfter,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) List<String> fields
     ) throws JsonProcessingException {
         var catFilter = new CatFilter(
                 ownerId,
                 colors,
                 birthdayAfter,
-                birthdayBefore
+                birthdayBefore,
+                fields
         );
-        return ResponseEntity.ok(catService.getAllCatsFiltered(catFilter, page, size));
+        var cats = sort != null || after != null
+                ? catService.getAllCatsAfter(catFilter, sort == null ? "id" : sort, after, size)
+                : catService.getAllCatsFiltered(catFilter, page, size);
+        return cats.thenApply(CatController::raw);
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<ResponseBodyEmitter> exportCats() {
+        return export.of(catService::exportCats, CatDto::id);
     }
 
     @PostMapping
-    public ResponseEntity<?> createCat(@RequestBody CatDto cat) throws JsonProcessingException {
-        return ResponseEntity.ok(catService.createCat(cat));
+    public CompletableFuture<ResponseEntity<?>> createCat(@RequestBody CatDto cat) throws JsonProcessingException {
+        return catService.createCat(cat)
+                .thenApply(CatController::withETag);
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<?>> createCats(@RequestBody List<CatDto> cats) {
+        return catService.createCats(cats)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @PutMapping("/batch")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public CompletableFuture<ResponseEntity<?>> updateCats(@RequestBody List<CatDto> cats) {
+        return catService.updateCats(cats)
+                .thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/{id}")
-    @PostAuthorize("hasAuthority('ROLE_ADMIN') ||" +
-            "hasAuthority('ROLE_USER') &&" +
-            "@catClientService.ownerOwnsCat(authentication.principal.ownerId, #id)")
-    public ResponseEntity<?> getCat(@PathVariable long id) throws JsonProcessingException {
-        return ResponseEntity.ok(catService.getCat(id));
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_USER')")
+    public CompletableFuture<ResponseEntity<?>> getCat(
+            @PathVariable long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestParam(required = false) List<String> fields,
+            @AuthenticationPrincipal UserDetailsImpl user
+    ) throws JsonProcessingException {
+        if (ifNoneMatch == null)
+            return fetchCat(id, fields, user)
+                    .thenApply(CatController::withETag);
+        var version = user.isAdmin()
+                ? catService.getCatVersion(id)
+                : catService.getCatVersionIfOwned(ownerIdOf(user), id);
+        return version.thenCompose(currentVersion -> {
+            if (currentVersion != null && !ETags.noneMatch(ifNoneMatch, ETags.of(currentVersion)))
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(ETags.of(currentVersion))
+                        .build());
+            return fetchCat(id, fields, user)
+                    .thenApply(CatController::withETag);
+        });
     }
 
     @PutMapping("/{id}")
-    @PostAuthorize("hasAuthority('ROLE_ADMIN') ||" +
-            "hasAuthority('ROLE_USER') &&" +
-            "@catClientService.ownerOwnsCat(authentication.principal.ownerId, #id)")
-    public ResponseEntity<?> updateCat(@PathVariable long id, @RequestBody CatDto cat) throws JsonProcessingException {
-        return ResponseEntity.ok(catService.updateCat(id, cat));
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_USER')")
+    public CompletableFuture<ResponseEntity<?>> updateCat(
+            @PathVariable long id,
+            @RequestBody CatDto cat,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @AuthenticationPrincipal UserDetailsImpl user
+    ) throws JsonProcessingException {
+        Long expectedVersion = ETags.versionOf(ifMatch);
+        if (expectedVersion != null)
+            cat = new CatDto(cat.id(),
+                    cat.name(),
+                    cat.birthday(),
+                    cat.breed(),
+                    cat.color(),
+                    cat.ownerId(),
+                    cat.friends(),
+                    expectedVersion);
+        var updatedCat = user.isAdmin()
+                ? catService.updateCat(id, cat)
+                : catService.updateCatIfOwned(ownerIdOf(user), id, cat);
+        return updatedCat.thenApply(CatController::withETag);
     }
 
     @DeleteMapping("/{id}")
-    @PostAuthorize("hasAuthority('ROLE_ADMIN') ||" +
-            "hasAuthority('ROLE_USER') &&" +
-            "@catClientService.ownerOwnsCat(authentication.principal.ownerId, #id)")
-    public ResponseEntity<?> deleteCat(@PathVariable long id) throws JsonProcessingException {
-        return ResponseEntity.ok(catService.deleteCat(id));
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_USER')")
+    public CompletableFuture<ResponseEntity<?>> deleteCat(
+            @PathVariable long id,
+            @AuthenticationPrincipal UserDetailsImpl user
+    ) throws JsonProcessingException {
+        var result = user.isAdmin()
+                ? catService.deleteCat(id)
+                : catService.deleteCatIfOwned(ownerIdOf(user), id);
+        return result.thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/friendships")
-    @PostAuthorize("hasAuthority('ROLE_ADMIN') ||" +
-            "(hasAuthority('ROLE_USER') &&" +
-            "(@catClientService.ownerOwnsCat(authentication.principal.ownerId, #cat1Id)) ||" +
-            "@catClientService.ownerOwnsCat(authentication.principal.ownerId, #cat2Id))")
-    public ResponseEntity<?> befriend(
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_USER')")
+    public CompletableFuture<ResponseEntity<?>> befriend(
             @RequestParam long cat1Id,
-            @RequestParam long cat2Id
+            @RequestParam long cat2Id,
+            @AuthenticationPrincipal UserDetailsImpl user
     ) throws JsonProcessingException {
-        return ResponseEntity.ok(catService.befriendCats(cat1Id, cat2Id));
+        var result = user.isAdmin()
+                ? catService.befriendCats(cat1Id, cat2Id)
+                : catService.befriendCatsIfOwned(ownerIdOf(user), cat1Id, cat2Id);
+        return result.thenApply(ResponseEntity::ok);
     }
 
     @DeleteMapping("/friendships")
-    @PostAuthorize("hasAuthority('ROLE_ADMIN') ||" +
-            "(hasAuthority('ROLE_USER') &&" +
-            "(@catClientService.ownerOwnsCat(authentication.principal.ownerId, #cat1Id)) ||" +
-            "@catClientService.ownerOwnsCat(authentication.principal.ownerId, #cat2Id))")
-    public ResponseEntity<?> unfriend(
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_USER')")
+    public CompletableFuture<ResponseEntity<?>> unfriend(
             @RequestParam long cat1Id,
-            @RequestParam long cat2Id
+            @RequestParam long cat2Id,
+            @AuthenticationPrincipal UserDetailsImpl user
     ) throws JsonProcessingException {
-        return ResponseEntity.ok(catService.unfriendCats(cat1Id, cat2Id));
+        var result = user.isAdmin()
+                ? catService.unfriendCats(cat1Id, cat2Id)
+                : catService.unfriendCatsIfOwned(ownerIdOf(user), cat1Id, cat2Id);
+        return result.thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{id}/graph/mutual")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_USER')")
+    public CompletableFuture<ResponseEntity<?>> getMutualFriends(
+            @PathVariable long id,
+            @RequestParam long with,
+            @AuthenticationPrincipal UserDetailsImpl user
+    ) throws JsonProcessingException {
+        return catService.getMutualFriends(graphOwnerOf(user), id, with)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{id}/graph/friends")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_USER')")
+    public CompletableFuture<ResponseEntity<?>> getFriendsWithin(
+            @PathVariable long id,
+            @RequestParam(defaultValue = "2") int depth,
+            @RequestParam(defaultValue = "100") int limit,
+            @AuthenticationPrincipal UserDetailsImpl user
+    ) throws JsonProcessingException {
+        return catService.getFriendsWithin(graphOwnerOf(user), id, depth, limit)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{id}/graph/path")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_USER')")
+    public CompletableFuture<ResponseEntity<?>> getFriendshipPath(
+            @PathVariable long id,
+            @RequestParam long to,
+            @AuthenticationPrincipal UserDetailsImpl user
+    ) throws JsonProcessingException {
+        return catService.getFriendshipPath(graphOwnerOf(user), id, to)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{id}/graph/component")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_USER')")
+    public CompletableFuture<ResponseEntity<?>> getFriendComponent(
+            @PathVariable long id,
+            @RequestParam(defaultValue = "100") int limit,
+            @AuthenticationPrincipal UserDetailsImpl user
+    ) throws JsonProcessingException {
+        return catService.getFriendComponent(graphOwnerOf(user), id, limit)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    private CompletableFuture<RawReply> fetchCat(long id, List<String> fields, UserDetailsImpl user) {
+        try {
+            return user.isAdmin()
+                    ? catService.getCat(id, fields)
+                    : catService.getCatIfOwned(ownerIdOf(user), id, fields);
+        } catch (JsonProcessingException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    private static ResponseEntity<?> withETag(CatDto cat) {
+        return ResponseEntity.ok()
+                .eTag(ETags.of(cat.version()))
+                .body(cat);
+    }
+
+    // a sparse fieldset without version carries no ETag
+    private static ResponseEntity<?> withETag(RawReply cat) {
+        if (cat.version() == null)
+            return raw(cat);
+        return ResponseEntity.ok()
+                .eTag(ETags.of(cat.version()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(cat.body());
+    }
+
+    private static ResponseEntity<?> raw(RawReply reply) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(reply.body());
+    }
+
+    private static Long graphOwnerOf(UserDetailsImpl user) {
+        return user.isAdmin() ? null : ownerIdOf(user);
+    }
+
+    private static long ownerIdOf(UserDetailsImpl user) {
+        if (user.getOwnerId() == null)
+            throw new AccessDeniedException("User " + user.getUsername() + " is not an owner");
+        return user.getOwnerId();
     }
-}
\ No newline at end of file
+}
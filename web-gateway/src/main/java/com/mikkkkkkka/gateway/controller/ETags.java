@@ -0,0 +1,53 @@
+package com.mikkkkkkka.gateway.controller;
+
+import com.mikkkkkkka.common.exception.VersionMismatchException;
+
+import java.util.Arrays;
+import java.util.List;
+
+final class ETags {
+
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+
+    private ETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    static String of(long version, List<? extends Number> catIds) {
+        long[] ids = catIds.stream()
+                .mapToLong(Number::longValue)
+                .sorted()
+                .toArray();
+        return "\"" + version + "-" + Integer.toHexString(Arrays.hashCode(ids)) + "\"";
+    }
+
+    static boolean noneMatch(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith(WEAK_PREFIX))
+                candidate = candidate.substring(WEAK_PREFIX.length());
+            if (candidate.equals(ANY) || candidate.equals(etag))
+                return false;
+        }
+        return true;
+    }
+
+    static Long versionOf(String ifMatch) throws VersionMismatchException {
+        if (ifMatch == null || ifMatch.trim().equals(ANY))
+            return null;
+        String etag = ifMatch.trim();
+        if (etag.length() < 2 || !etag.startsWith("\"") || !etag.endsWith("\""))
+            throw new VersionMismatchException("If-Match must be a single strong ETag");
+        String value = etag.substring(1, etag.length() - 1);
+        int separator = value.indexOf('-');
+        try {
+            return Long.parseLong(separator < 0 ? value : value.substring(0, separator));
+        } catch (NumberFormatException exception) {
+            throw new VersionMismatchException("If-Match does not match any version");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.mikkkkkkka.gateway.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToLongFunction;
+
+@Component
+class NdjsonExport {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @FunctionalInterface
+    interface ChunkSource<T> {
+        CompletableFuture<List<T>> fetch(long afterId, int limit) throws JsonProcessingException;
+    }
+
+    private final ObjectMapper objectMapper;
+    private final AsyncTaskExecutor executor;
+    private final int chunkSize;
+    private final Duration timeout;
+
+    @Autowired
+    NdjsonExport(ObjectMapper objectMapper,
+                 @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) AsyncTaskExecutor executor,
+                 @Value("${gateway.export.chunk-size}") int chunkSize,
+                 @Value("${gateway.export.timeout}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.timeout = timeout;
+    }
+
+    // Pulls keyset chunks one at a time, so only a single chunk is held in memory. The emitter carries its own
+    // timeout: an export outlives spring.mvc.async.request-timeout, which the other async endpoints keep.
+    <T> ResponseEntity<ResponseBodyEmitter> of(ChunkSource<T> source, ToLongFunction<T> idOf) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeout.toMillis());
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        done.whenComplete((ignored, throwable) -> {
+            if (throwable == null)
+                emitter.complete();
+            else
+                emitter.completeWithError(throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause()
+                        : throwable);
+        });
+        sendFrom(0, source, idOf, emitter, done);
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(emitter);
+    }
+
+    // Asks for the next chunk only once the previous one is written, and no thread waits for a reply in between.
+    // The write runs on the task executor rather than on the reply listener thread, a slow client blocks it.
+    private <T> void sendFrom(long afterId, ChunkSource<T> source, ToLongFunction<T> idOf,
+                              ResponseBodyEmitter emitter, CompletableFuture<Void> done) {
+        fetch(source, afterId)
+                .thenAcceptAsync(chunk -> {
+                    write(emitter, chunk);
+                    if (chunk.size() < chunkSize)
+                        done.complete(null);
+                    else
+                        sendFrom(idOf.applyAsLong(chunk.get(chunk.size() - 1)), source, idOf, emitter, done);
+                }, executor)
+                .exceptionally(throwable -> {
+                    done.completeExceptionally(throwable);
+                    return null;
+                });
+    }
+
+    private <T> CompletableFuture<List<T>> fetch(ChunkSource<T> source, long afterId) {
+        try {
+            return source.fetch(afterId, chunkSize);
+        } catch (JsonProcessingException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    private <T> void write(ResponseBodyEmitter emitter, List<T> chunk) {
+        try {
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            for (T item : chunk) {
+                lines.write(objectMapper.writeValueAsBytes(item));
+                lines.write('\n');
+            }
+            emitter.send(lines.toByteArray(), NDJSON);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -2,78 +2,176 @@ package com.mikkkkkkka.gateway.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.mikkkkkkka.common.model.dto.OwnerDto;
+import com.mikkkkkkka.common.model.dto.OwnerDtoWithCats;
 import com.mikkkkkkka.common.model.filter.OwnerFilter;
+import com.mikkkkkkka.gateway.model.UserDetailsImpl;
 import com.mikkkkkkka.gateway.service.OwnerClientService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("api/owners")
 public class OwnerController {
 
     private final OwnerClientService ownerService;
+    private final NdjsonExport export;
 
     @Autowired
-    public OwnerController(OwnerClientService ownerService) {
+    public OwnerController(OwnerClientService ownerService,
+                           NdjsonExport export) {
         this.ownerService = ownerService;
+        this.export = export;
     }
 
     @GetMapping
-    public ResponseEntity<?> getAllOwners(
+    public CompletableFuture<ResponseEntity<?>> getAllOwners(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) LocalDate birthdayAfter,
-            @RequestParam(required = false) LocalDate birthdayBefore
+            @RequestParam(required = false) LocalDate birthdayBefore,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) List<String> fields
     ) throws JsonProcessingException {
         var ownerFilter = new OwnerFilter(
                 birthdayAfter,
-                birthdayBefore
+                birthdayBefore,
+                fields
         );
-        return ResponseEntity.ok(ownerService.getAllOwnersFiltered(ownerFilter, page, size));
+        if (fields != null)
+            return sort != null || after != null
+                    ? ownerService.getAllOwnersProjectedAfter(ownerFilter, sort == null ? "id" : sort, after, size)
+                    .thenApply(ResponseEntity::ok)
+                    : ownerService.getAllOwnersProjected(ownerFilter, page, size)
+                    .thenApply(ResponseEntity::ok);
+        if (sort != null || after != null)
+            return ownerService.getAllOwnersAfter(ownerFilter, sort == null ? "id" : sort, after, size)
+                    .thenApply(ResponseEntity::ok);
+        return ownerService.getAllOwnersFiltered(ownerFilter, page, size)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<ResponseBodyEmitter> exportOwners() {
+        return export.of(ownerService::exportOwners, OwnerDtoWithCats::id);
     }
 
     @PostMapping
-    public ResponseEntity<?> createOwner(@RequestBody OwnerDto owner) throws JsonProcessingException {
-        return ResponseEntity.ok(ownerService.createOwner(owner));
+    public CompletableFuture<ResponseEntity<?>> createOwner(@RequestBody OwnerDto owner) throws JsonProcessingException {
+        return ownerService.createOwner(owner)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<?>> createOwners(@RequestBody List<OwnerDto> owners) {
+        return ownerService.createOwners(owners)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @PutMapping("/batch")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public CompletableFuture<ResponseEntity<?>> updateOwners(@RequestBody List<OwnerDto> owners) {
+        return ownerService.updateOwners(owners)
+                .thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'OWNER_' + #id)")
-    public ResponseEntity<?> getOwner(@PathVariable long id) throws JsonProcessingException {
-        return ResponseEntity.ok(ownerService.getOwner(id));
+    public CompletableFuture<ResponseEntity<?>> getOwner(
+            @PathVariable long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestParam(required = false) List<String> fields
+    ) throws JsonProcessingException {
+        // the ETag covers the whole owner, so sparse fieldsets are served without one
+        if (fields != null)
+            return ownerService.getOwnerProjected(id, fields)
+                    .thenApply(ResponseEntity::ok);
+        if (ifNoneMatch == null)
+            return ownerService.getOwner(id)
+                    .thenApply(OwnerController::withETag);
+        var version = ownerService.getOwnerVersion(id);
+        var catIds = ownerService.getCatIdsOfOwner(id);
+        return version.thenCombine(catIds, (currentVersion, cats) ->
+                        currentVersion == null ? null : ETags.of(currentVersion, cats))
+                .thenCompose(etag -> {
+                    if (etag != null && !ETags.noneMatch(ifNoneMatch, etag))
+                        return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(etag)
+                                .build());
+                    return fetchOwner(id)
+                            .thenApply(OwnerController::withETag);
+                });
     }
 
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'OWNER_' + #id)")
-    public ResponseEntity<?> updateOwner(@PathVariable long id, @RequestBody OwnerDto owner) throws JsonProcessingException {
-        return ResponseEntity.ok(ownerService.updateOwner(id, owner));
+    public CompletableFuture<ResponseEntity<?>> updateOwner(
+            @PathVariable long id,
+            @RequestBody OwnerDto owner,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) throws JsonProcessingException {
+        Long expectedVersion = ETags.versionOf(ifMatch);
+        if (expectedVersion != null)
+            owner = new OwnerDto(owner.id(), owner.name(), owner.birthday(), expectedVersion);
+        return ownerService.updateOwner(id, owner)
+                .thenApply(OwnerController::withETag);
     }
 
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'OWNER_' + #id)")
-    public ResponseEntity<?> deleteOwner(@PathVariable long id) throws JsonProcessingException {
-        return ResponseEntity.ok(ownerService.deleteOwner(id));
+    public CompletableFuture<ResponseEntity<?>> deleteOwner(@PathVariable long id) throws JsonProcessingException {
+        return ownerService.deleteOwner(id)
+                .thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/ownerships")
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'OWNER_' + #ownerId)")
-    public ResponseEntity<?> addCatToOwner(
+    public CompletableFuture<ResponseEntity<?>> addCatToOwner(
             @RequestParam long ownerId,
-            @RequestParam long catId
+            @RequestParam long catId,
+            @AuthenticationPrincipal UserDetailsImpl user
     ) throws JsonProcessingException {
-        return ResponseEntity.ok(ownerService.addCatToOwner(ownerId, catId));
+        var result = user.isAdmin()
+                ? ownerService.addCatToOwner(ownerId, catId)
+                : ownerService.addCatToOwnerIfUnowned(ownerId, catId);
+        return result.thenApply(ResponseEntity::ok);
     }
 
     @DeleteMapping("/ownerships")
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'OWNER_' + #ownerId)")
-    public ResponseEntity<?> removeCatFromOwner(
+    public CompletableFuture<ResponseEntity<?>> removeCatFromOwner(
             @RequestParam long ownerId,
-            @RequestParam long catId
+            @RequestParam long catId,
+            @AuthenticationPrincipal UserDetailsImpl user
     ) throws JsonProcessingException {
-        return ResponseEntity.ok(ownerService.removeCatFromOwner(ownerId, catId));
+        var result = user.isAdmin()
+                ? ownerService.removeCatFromOwner(ownerId, catId)
+                : ownerService.removeCatFromOwnerIfOwned(ownerId, catId);
+        return result.thenApply(ResponseEntity::ok);
+    }
+
+    private CompletableFuture<OwnerDtoWithCats> fetchOwner(long id) {
+        try {
+            return ownerService.getOwner(id);
+        } catch (JsonProcessingException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    private static ResponseEntity<?> withETag(OwnerDtoWithCats owner) {
+        return ResponseEntity.ok()
+                .eTag(ETags.of(owner.version(), owner.cats()))
+                .body(owner);
     }
-}
\ No newline at end of file
+}
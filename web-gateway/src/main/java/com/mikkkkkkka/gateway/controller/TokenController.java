@@ -0,0 +1,40 @@
+package com.mikkkkkkka.gateway.controller;
+
+import com.mikkkkkkka.common.model.dto.TokenDto;
+import com.mikkkkkkka.common.model.dto.UserDto;
+import com.mikkkkkkka.gateway.model.UserDetailsImpl;
+import com.mikkkkkkka.gateway.security.TokenService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("api/auth")
+@ConditionalOnProperty(name = "gateway.auth.mode", havingValue = "token")
+public class TokenController {
+
+    private final AuthenticationManager authenticationManager;
+    private final TokenService tokenService;
+
+    @Autowired
+    public TokenController(AuthenticationManager authenticationManager, TokenService tokenService) {
+        this.authenticationManager = authenticationManager;
+        this.tokenService = tokenService;
+    }
+
+    @PostMapping("/login")
+    public ResponseEntity<TokenDto> login(@RequestBody UserDto userDto) throws IOException {
+        Authentication authentication = authenticationManager.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated(userDto.username(), userDto.password()));
+        return ResponseEntity.ok(tokenService.issueToken((UserDetailsImpl) authentication.getPrincipal()));
+    }
+}
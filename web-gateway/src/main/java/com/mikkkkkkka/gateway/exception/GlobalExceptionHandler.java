@@ -2,6 +2,7 @@ package com.mikkkkkkka.gateway.exception;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.mikkkkkkka.common.exception.ServiceUnavailableException;
+import com.mikkkkkkka.common.exception.VersionMismatchException;
 import org.springframework.amqp.AmqpConnectException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -29,6 +30,15 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(VersionMismatchException.class)
+    public ResponseEntity<ErrorResponse> handleVersionMismatch(VersionMismatchException e) {
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.PRECONDITION_FAILED.value(),
+                HttpStatus.PRECONDITION_FAILED.toString(),
+                e.getMessage());
+        return new ResponseEntity<>(error, HttpStatus.PRECONDITION_FAILED);
+    }
+
     @ExceptionHandler(ServiceUnavailableException.class)
     public ResponseEntity<ErrorResponse> handleServiceUnavailable() {
         ErrorResponse error = new ErrorResponse(
@@ -5,15 +5,13 @@ import lombok.Getter;
 @Getter
 public class TransferredHttpException extends RuntimeException {
     private Integer status;
-    private RuntimeException error;
 
     public TransferredHttpException(String message) {
         super(message);
     }
 
-    public TransferredHttpException(int status, RuntimeException error) {
-        this(error.getMessage());
+    public TransferredHttpException(int status, String message) {
+        this(message);
         this.status = status;
-        this.error = error;
     }
 }
@@ -1,5 +1,6 @@
 package com.mikkkkkkka.gateway.model;
 
+import com.mikkkkkkka.common.model.UserRole;
 import com.mikkkkkkka.gateway.model.entity.User;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
@@ -38,4 +39,12 @@ public class UserDetailsImpl implements UserDetails {
     public Long getOwnerId() {
         return user.getOwnerId();
     }
+
+    public UserRole getRole() {
+        return user.getRole();
+    }
+
+    public boolean isAdmin() {
+        return user.getRole() == UserRole.ADMIN;
+    }
 }
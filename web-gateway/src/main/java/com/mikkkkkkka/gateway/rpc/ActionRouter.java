@@ -0,0 +1,26 @@
+package com.mikkkkkkka.gateway.rpc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Picks the routing key, and thereby the service queue, of an action.
+// Anything not listed as a read or a scan goes to the write queue: every queue's listener handles every action,
+// so a missing entry costs isolation but never a request.
+public class ActionRouter {
+
+    private final Map<String, String> routingKeys = new HashMap<>();
+    private final String writeRoutingKey;
+
+    public ActionRouter(String readRoutingKey, Set<String> reads,
+                        String scanRoutingKey, Set<String> scans,
+                        String writeRoutingKey) {
+        reads.forEach(action -> routingKeys.put(action, readRoutingKey));
+        scans.forEach(action -> routingKeys.put(action, scanRoutingKey));
+        this.writeRoutingKey = writeRoutingKey;
+    }
+
+    public String routingKeyFor(String action) {
+        return action == null ? writeRoutingKey : routingKeys.getOrDefault(action, writeRoutingKey);
+    }
+}
@@ -0,0 +1,124 @@
+package com.mikkkkkkka.gateway.rpc;
+
+import java.time.Duration;
+
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int minimumCalls;
+    private final int halfOpenProbes;
+
+    // outcomes of the last window.length calls while closed
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failedCount;
+    private int slowCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    public CircuitBreaker(int failureRateThreshold,
+                          int slowCallRateThreshold,
+                          Duration slowCallDuration,
+                          Duration openDuration,
+                          int windowSize,
+                          int minimumCalls,
+                          int halfOpenProbes) {
+        if (windowSize < 1 || minimumCalls < 1 || halfOpenProbes < 1)
+            throw new IllegalArgumentException("Circuit breaker window, minimum calls and probes must be positive");
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.halfOpenProbes = halfOpenProbes;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos)
+                return false;
+            state = State.HALF_OPEN;
+            probesIssued = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesIssued >= halfOpenProbes)
+                return false;
+            probesIssued++;
+        }
+        return true;
+    }
+
+    public synchronized void onResult(long durationNanos, boolean failure) {
+        boolean slowCall = durationNanos >= slowCallNanos;
+        switch (state) {
+            case CLOSED -> {
+                record(failure, slowCall);
+                if (recorded >= minimumCalls
+                        && (failedCount * 100 >= failureRateThreshold * recorded
+                        || slowCount * 100 >= slowCallRateThreshold * recorded))
+                    open();
+            }
+            case HALF_OPEN -> {
+                if (failure || slowCall)
+                    open();
+                else if (++probesSucceeded >= halfOpenProbes)
+                    close();
+            }
+            case OPEN -> {
+                // a call admitted before the breaker opened; nothing to learn from it
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure, boolean slowCall) {
+        if (recorded == failed.length) {
+            if (failed[next])
+                failedCount--;
+            if (slow[next])
+                slowCount--;
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        slow[next] = slowCall;
+        if (failure)
+            failedCount++;
+        if (slowCall)
+            slowCount++;
+        next = (next + 1) % failed.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failedCount = 0;
+        slowCount = 0;
+    }
+}
@@ -0,0 +1,7 @@
+package com.mikkkkkkka.gateway.rpc;
+
+public record RawReply(
+        byte[] body,
+        Long version
+) {
+}
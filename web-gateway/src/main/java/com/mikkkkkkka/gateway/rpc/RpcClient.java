@@ -0,0 +1,256 @@
+package com.mikkkkkkka.gateway.rpc;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.mikkkkkkka.common.exception.ServiceUnavailableException;
+import com.mikkkkkkka.common.model.dto.ApiResponse;
+import com.mikkkkkkka.common.rpc.RpcHeaders;
+import com.mikkkkkkka.common.rpc.codec.RpcCodec;
+import com.mikkkkkkka.common.rpc.codec.RpcCodecs;
+import com.mikkkkkkka.common.tracing.Spans;
+import com.mikkkkkkka.gateway.exception.TransferredHttpException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpReplyTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class RpcClient {
+
+    private final String serviceName;
+    private final String exchange;
+    private final ActionRouter router;
+    private final String replyQueue;
+    private final RabbitTemplate rabbitTemplate;
+    private final RpcReplyListener replyListener;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Duration replyTimeout;
+    private final CircuitBreaker circuitBreaker;
+    private final RpcCodec requestCodec;
+    private final RpcCodecs codecs;
+    private final MeterRegistry meterRegistry;
+    private final Counter timeouts;
+    private final Tracer tracer;
+
+    public RpcClient(String serviceName,
+                     String exchange,
+                     ActionRouter router,
+                     String replyQueue,
+                     RabbitTemplate rabbitTemplate,
+                     RpcReplyListener replyListener,
+                     int maxInFlight,
+                     Duration replyTimeout,
+                     CircuitBreaker circuitBreaker,
+                     RpcCodec requestCodec,
+                     RpcCodecs codecs,
+                     MeterRegistry meterRegistry,
+                     Tracer tracer) {
+        this.serviceName = serviceName;
+        this.exchange = exchange;
+        this.router = router;
+        this.replyQueue = replyQueue;
+        this.rabbitTemplate = rabbitTemplate;
+        this.replyListener = replyListener;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.replyTimeout = replyTimeout;
+        this.circuitBreaker = circuitBreaker;
+        this.requestCodec = requestCodec;
+        this.codecs = codecs;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer;
+        this.timeouts = Counter.builder("gateway.rpc.timeouts")
+                .description("Calls that got no reply within the reply timeout")
+                .tag("service", serviceName)
+                .register(meterRegistry);
+        Gauge.builder("gateway.rpc.in-flight", this, RpcClient::inFlightCount)
+                .description("Calls waiting for a reply")
+                .tag("service", serviceName)
+                .register(meterRegistry);
+    }
+
+    public <T> CompletableFuture<T> call(String action, Object request, TypeReference<ApiResponse<T>> responseType) {
+        long start = System.nanoTime();
+        Message message = MessageBuilder
+                .withBody(encode(action, request))
+                .setContentType(requestCodec.contentType())
+                .setHeader("action", action)
+                .build();
+        return observe(action, start, exchange(message)
+                .thenApply(reply -> {
+                    // The service answers in the codec of the request, but the reply says so itself
+                    ApiResponse<T> response = Spans.inSpan(tracer, "rpc decode", action, () -> {
+                        long decodeStart = System.nanoTime();
+                        ApiResponse<T> decoded = codecs.forContentType(reply.getMessageProperties().getContentType())
+                                .decode(reply.getBody(), responseType);
+                        codecTimer(action, "decode").record(System.nanoTime() - decodeStart, TimeUnit.NANOSECONDS);
+                        return decoded;
+                    });
+                    if (response.status() != 200)
+                        throw new TransferredHttpException(response.status(), response.message());
+                    return response.data();
+                }));
+    }
+
+    // Asks the service for the bare DTO as JSON so the gateway can hand the bytes to the HTTP client untouched
+    public CompletableFuture<RawReply> callRaw(String action, Object request) {
+        long start = System.nanoTime();
+        Message message = MessageBuilder
+                .withBody(encode(action, request))
+                .setContentType(requestCodec.contentType())
+                .setHeader("action", action)
+                .setHeader(RpcHeaders.REPLY_MODE, RpcHeaders.RAW)
+                .build();
+        return observe(action, start, exchange(message)
+                .thenApply(reply -> {
+                    MessageProperties properties = reply.getMessageProperties();
+                    Number status = properties.getHeader(RpcHeaders.STATUS);
+                    if (status == null)
+                        throw new TransferredHttpException(502, serviceName + " sent a reply without status");
+                    if (status.intValue() != 200)
+                        throw new TransferredHttpException(status.intValue(), properties.getHeader(RpcHeaders.MESSAGE));
+                    Number version = properties.getHeader(RpcHeaders.VERSION);
+                    return new RawReply(reply.getBody(), version == null ? null : version.longValue());
+                }));
+    }
+
+    private byte[] encode(String action, Object request) {
+        return Spans.inSpan(tracer, "rpc encode", action, () -> {
+            long start = System.nanoTime();
+            byte[] body = requestCodec.encode(request);
+            codecTimer(action, "encode").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return body;
+        });
+    }
+
+    private Timer codecTimer(String action, String operation) {
+        return Timer.builder("gateway.rpc.codec")
+                .tag("service", serviceName)
+                .tag("action", action)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private <T> CompletableFuture<T> observe(String action, long start, CompletableFuture<T> result) {
+        return result.whenComplete((value, throwable) -> Timer.builder("gateway.rpc.requests")
+                .description("Broker calls from send to decoded reply")
+                .tag("service", serviceName)
+                .tag("action", action)
+                .tag("status", status(throwable))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    private static String status(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null)
+            throwable = throwable.getCause();
+        if (throwable == null)
+            return "200";
+        if (throwable instanceof TransferredHttpException exception && exception.getStatus() != null)
+            return String.valueOf(exception.getStatus());
+        if (throwable instanceof ServiceUnavailableException)
+            return "503";
+        return "500";
+    }
+
+    private CompletableFuture<Message> exchange(Message message) {
+        return sendAndReceive(message)
+                .handle((reply, throwable) -> {
+                    if (throwable instanceof AmqpReplyTimeoutException)
+                        timeouts.increment();
+                    else if (throwable != null)
+                        throw new CompletionException(throwable);
+                    if (reply == null)
+                        throw new ServiceUnavailableException(serviceName + " unavailable");
+                    return reply;
+                });
+    }
+
+    public CompletableFuture<Message> sendAndReceive(Message message) {
+        return sendAndReceive(message, replyTimeout);
+    }
+
+    public CompletableFuture<Message> sendAndReceive(Message message, Duration timeout) {
+        if (!inFlight.tryAcquire())
+            return CompletableFuture.failedFuture(new ServiceUnavailableException(
+                    serviceName + " has too many requests in flight"));
+        if (!circuitBreaker.tryAcquirePermission()) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(new ServiceUnavailableException(
+                    serviceName + " is unavailable, circuit breaker is open"));
+        }
+
+        String correlationId = UUID.randomUUID().toString();
+        MessageProperties properties = message.getMessageProperties();
+        properties.setCorrelationId(correlationId);
+        properties.setReplyTo(replyQueue);
+
+        String action = properties.getHeader("action");
+        Span caller = tracer.currentSpan();
+        // Covers the whole round trip; the producer span of the template and the service's spans nest below it
+        Span span = tracer.nextSpan()
+                .name("rpc " + action)
+                .tag("service", serviceName)
+                .start();
+
+        long start = System.nanoTime();
+        CompletableFuture<Message> reply = replyListener.register(correlationId, message, timeout);
+        reply.whenComplete((response, throwable) -> {
+            inFlight.release();
+            circuitBreaker.onResult(System.nanoTime() - start, throwable != null);
+            if (throwable != null)
+                span.error(throwable);
+            span.end();
+        });
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            rabbitTemplate.send(exchange, router.routingKeyFor(action), message);
+        } catch (AmqpException exception) {
+            reply.completeExceptionally(exception);
+        }
+        return inCallerSpan(caller, reply);
+    }
+
+    // Replies complete on the reply listener thread. Completing the caller's stages inside the caller's span
+    // keeps follow-up calls, like fetching the cats of an owner, in the same trace.
+    private CompletableFuture<Message> inCallerSpan(Span caller, CompletableFuture<Message> reply) {
+        if (caller == null)
+            return reply;
+        CompletableFuture<Message> continued = new CompletableFuture<>();
+        reply.whenComplete((response, throwable) -> {
+            try (Tracer.SpanInScope ignored = tracer.withSpan(caller)) {
+                if (throwable != null)
+                    continued.completeExceptionally(throwable);
+                else
+                    continued.complete(response);
+            }
+        });
+        return continued;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int inFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+}
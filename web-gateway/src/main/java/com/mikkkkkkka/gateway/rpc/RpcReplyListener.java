@@ -0,0 +1,62 @@
+package com.mikkkkkkka.gateway.rpc;
+
+import org.springframework.amqp.core.AmqpReplyTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class RpcReplyListener implements MessageListener, DisposableBean {
+
+    private final Map<String, CompletableFuture<Message>> pendingReplies = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor timeoutScheduler;
+
+    public RpcReplyListener() {
+        timeoutScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "rpc-reply-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timeoutScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    public CompletableFuture<Message> register(String correlationId, Message request, Duration timeout) {
+        CompletableFuture<Message> reply = new CompletableFuture<>();
+        pendingReplies.put(correlationId, reply);
+        ScheduledFuture<?> expiry = timeoutScheduler.schedule(
+                () -> reply.completeExceptionally(new AmqpReplyTimeoutException(
+                        "Reply timed out after " + timeout.toMillis() + " ms", request)),
+                timeout.toMillis(), TimeUnit.MILLISECONDS);
+        reply.whenComplete((message, throwable) -> {
+            expiry.cancel(false);
+            pendingReplies.remove(correlationId);
+        });
+        return reply;
+    }
+
+    public int pendingCount() {
+        return pendingReplies.size();
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        String correlationId = message.getMessageProperties().getCorrelationId();
+        if (correlationId == null)
+            return;
+        CompletableFuture<Message> reply = pendingReplies.get(correlationId);
+        if (reply != null)
+            reply.complete(message);
+    }
+
+    @Override
+    public void destroy() {
+        timeoutScheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package com.mikkkkkkka.gateway.rpc;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+@Component
+public class SingleFlight {
+
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, ActionStats> stats = new ConcurrentHashMap<>();
+    private final ObjectWriter keyWriter;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public SingleFlight(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.keyWriter = objectMapper.writer()
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String action, Object payload, Supplier<CompletableFuture<T>> call)
+            throws JsonProcessingException {
+        String key = action + ":" + keyWriter.writeValueAsString(payload);
+        ActionStats actionStats = stats.computeIfAbsent(action, this::registerStats);
+        actionStats.requests.increment();
+
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            actionStats.coalesced.increment();
+            return existing.copy();
+        }
+
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException exception) {
+            result = CompletableFuture.failedFuture(exception);
+        }
+        result.whenComplete((value, throwable) -> {
+            inFlight.remove(key, created);
+            if (throwable != null)
+                created.completeExceptionally(throwable);
+            else
+                created.complete(value);
+        });
+        return created.copy();
+    }
+
+    private ActionStats registerStats(String action) {
+        ActionStats actionStats = new ActionStats();
+        FunctionCounter.builder("gateway.rpc.singleflight.requests", actionStats.requests, LongAdder::doubleValue)
+                .description("Read requests that went through single-flight coalescing")
+                .tag("action", action)
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.rpc.singleflight.coalesced", actionStats.coalesced, LongAdder::doubleValue)
+                .description("Read requests that shared an in-flight broker call")
+                .tag("action", action)
+                .register(meterRegistry);
+        Gauge.builder("gateway.rpc.singleflight.ratio", actionStats, ActionStats::ratio)
+                .description("Share of read requests served by an already in-flight broker call")
+                .tag("action", action)
+                .register(meterRegistry);
+        return actionStats;
+    }
+
+    private static class ActionStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+
+        private double ratio() {
+            double total = requests.sum();
+            return total == 0 ? 0 : coalesced.sum() / total;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.mikkkkkkka.gateway.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mikkkkkkka.common.model.UserRole;
+import com.mikkkkkkka.common.model.dto.TokenDto;
+import com.mikkkkkkka.gateway.model.UserDetailsImpl;
+import com.mikkkkkkka.gateway.model.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+@Service
+@ConditionalOnProperty(name = "gateway.auth.mode", havingValue = "token")
+public class TokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public TokenService(@Value("${gateway.auth.token.secret}") String secret,
+                        @Value("${gateway.auth.token.ttl}") Duration ttl,
+                        ObjectMapper objectMapper) {
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secretBytes.length < MIN_SECRET_LENGTH)
+            throw new IllegalStateException(
+                    "gateway.auth.token.secret must be at least " + MIN_SECRET_LENGTH + " bytes long");
+        this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+        this.ttl = ttl;
+        this.objectMapper = objectMapper;
+    }
+
+    public TokenDto issueToken(UserDetailsImpl user) throws IOException {
+        Instant expiresAt = Instant.now().plus(ttl);
+        var claims = new TokenClaims(user.getUsername(), user.getRole(), user.getOwnerId(), expiresAt.getEpochSecond());
+        String payload = ENCODER.encodeToString(objectMapper.writeValueAsBytes(claims));
+        return new TokenDto(payload + "." + ENCODER.encodeToString(sign(payload)), expiresAt);
+    }
+
+    public Optional<UserDetailsImpl> parseToken(String token) {
+        int separator = token.indexOf('.');
+        if (separator < 0)
+            return Optional.empty();
+        String payload = token.substring(0, separator);
+        try {
+            byte[] signature = DECODER.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload)))
+                return Optional.empty();
+            var claims = objectMapper.readValue(DECODER.decode(payload), TokenClaims.class);
+            if (Instant.now().getEpochSecond() >= claims.exp())
+                return Optional.empty();
+            User user = User.builder()
+                    .username(claims.sub())
+                    .role(claims.role())
+                    .ownerId(claims.ownerId())
+                    .build();
+            return Optional.of(new UserDetailsImpl(user));
+        } catch (IllegalArgumentException | IOException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private record TokenClaims(
+            String sub,
+            UserRole role,
+            Long ownerId,
+            long exp
+    ) {
+    }
+}
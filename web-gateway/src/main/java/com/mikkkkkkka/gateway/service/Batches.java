@@ -0,0 +1,69 @@
+package com.mikkkkkkka.gateway.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.mikkkkkkka.common.exception.ServiceUnavailableException;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
+import com.mikkkkkkka.gateway.exception.TransferredHttpException;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+class Batches {
+
+    @FunctionalInterface
+    interface ChunkCall<T, R> {
+        CompletableFuture<List<BatchItemResult<R>>> send(List<T> chunk) throws JsonProcessingException;
+    }
+
+    private Batches() {
+    }
+
+    // Sends one message per chunk and stitches the per-item results back together in request order.
+    // A chunk that fails as a whole reports its error on every item of that chunk.
+    static <T, R> CompletableFuture<List<BatchItemResult<R>>> inChunks(List<T> items,
+                                                                      int chunkSize,
+                                                                      ChunkCall<T, R> call) {
+        List<CompletableFuture<List<BatchItemResult<R>>>> chunks = new ArrayList<>();
+        for (int offset = 0; offset < items.size(); offset += chunkSize) {
+            List<T> chunk = items.subList(offset, Math.min(offset + chunkSize, items.size()));
+            chunks.add(sendChunk(chunk, offset, call));
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> chunks.stream()
+                        .flatMap(chunk -> chunk.join().stream())
+                        .toList());
+    }
+
+    private static <T, R> CompletableFuture<List<BatchItemResult<R>>> sendChunk(List<T> chunk,
+                                                                               int offset,
+                                                                               ChunkCall<T, R> call) {
+        CompletableFuture<List<BatchItemResult<R>>> results;
+        try {
+            results = call.send(chunk);
+        } catch (JsonProcessingException exception) {
+            results = CompletableFuture.failedFuture(exception);
+        }
+        return results.handle((chunkResults, throwable) -> {
+            List<BatchItemResult<R>> shifted = new ArrayList<>(chunk.size());
+            if (throwable == null) {
+                chunkResults.forEach(result -> shifted.add(new BatchItemResult<>(offset + result.index(),
+                        result.status(),
+                        result.message(),
+                        result.data())));
+                return shifted;
+            }
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            int status = cause instanceof TransferredHttpException transferred && transferred.getStatus() != null
+                    ? transferred.getStatus()
+                    : cause instanceof ServiceUnavailableException
+                    ? HttpStatus.SERVICE_UNAVAILABLE.value()
+                    : HttpStatus.INTERNAL_SERVER_ERROR.value();
+            for (int i = 0; i < chunk.size(); i++)
+                shifted.add(BatchItemResult.error(offset + i, status, cause.getMessage()));
+            return shifted;
+        });
+    }
+}
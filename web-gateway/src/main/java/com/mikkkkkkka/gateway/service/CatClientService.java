@@ -1,114 +1,181 @@
 package com.mikkkkkkka.gateway.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.mikkkkkkka.common.exception.BadRequestException;
-import com.mikkkkkkka.common.exception.ServiceUnavailableException;
 import com.mikkkkkkka.common.model.dto.ApiResponse;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
+import com.mikkkkkkka.common.model.dto.CatDistance;
 import com.mikkkkkkka.common.model.dto.CatDto;
+import com.mikkkkkkka.common.model.dto.FriendComponent;
 import com.mikkkkkkka.common.model.filter.CatFilter;
-import com.mikkkkkkka.gateway.config.RabbitMQConfig;
-import com.mikkkkkkka.gateway.exception.TransferredHttpException;
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageBuilder;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import com.mikkkkkkka.common.rpc.request.CatBatchRequest;
+import com.mikkkkkkka.common.rpc.request.CatListRequest;
+import com.mikkkkkkka.common.rpc.request.CatPairRequest;
+import com.mikkkkkkka.common.rpc.request.ExportRequest;
+import com.mikkkkkkka.common.rpc.request.FetchRequest;
+import com.mikkkkkkka.common.rpc.request.GraphRequest;
+import com.mikkkkkkka.common.rpc.request.IdRequest;
+import com.mikkkkkkka.common.rpc.request.OwnedCatRequest;
+import com.mikkkkkkka.common.rpc.request.UpdateCatRequest;
+import com.mikkkkkkka.gateway.rpc.RawReply;
+import com.mikkkkkkka.gateway.rpc.RpcClient;
+import com.mikkkkkkka.gateway.rpc.SingleFlight;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class CatClientService {
 
-    private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper;
+    private static final TypeReference<ApiResponse<CatDto>> CAT = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<List<CatDto>>> CATS = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<List<BatchItemResult<CatDto>>>> CAT_RESULTS = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<Long>> VERSION = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<String>> STATUS = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<List<Long>>> CAT_IDS = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<List<CatDistance>>> DISTANCES = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<FriendComponent>> COMPONENT = new TypeReference<>() {
+    };
+
+    private final RpcClient catRpcClient;
+    private final SingleFlight singleFlight;
+    private final int batchChunkSize;
 
     @Autowired
-    public CatClientService(RabbitTemplate rabbitTemplate, ObjectMapper objectMapper) {
-        this.rabbitTemplate = rabbitTemplate;
-        this.objectMapper = objectMapper;
-    }
-
-    private Object readDataFromRequest(Message message) {
-        var response = (ApiResponse<?>) rabbitTemplate.convertSendAndReceive(
-                RabbitMQConfig.CAT_EXCHANGE,
-                RabbitMQConfig.CAT_ROUTING_KEY,
-                message);
-        if (response == null)
-            throw new ServiceUnavailableException("Cat Service unavailable");
-        if (response.status() != HttpStatus.OK.value()) {
-            RuntimeException exception = objectMapper.convertValue(response.data(), RuntimeException.class);
-            throw new TransferredHttpException(response.status(), exception);
-        }
-        return response.data();
-    }
-
-    public Object createCat(CatDto catDto) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(catDto))
-                .setHeader("action", "CREATE_CAT")
-                .build();
-        return readDataFromRequest(message);
-    }
-
-    public Object getCat(long id) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(id))
-                .setHeader("action", "GET_CAT_BY_ID")
-                .build();
-        return readDataFromRequest(message);
-    }
-
-    public Object updateCat(long id, CatDto catDto) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(Map.of("id", id, "cat", catDto)))
-                .setHeader("action", "UPDATE_CAT")
-                .build();
-        return readDataFromRequest(message);
-    }
-
-    public Object deleteCat(long id) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(id))
-                .setHeader("action", "DELETE_CAT")
-                .build();
-        return readDataFromRequest(message);
-    }
-
-    public Object getAllCatsFiltered(CatFilter filter, int page, int size) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(
-                        Map.of("filter", filter, "page", page, "size", size)))
-                .setHeader("action", "GET_ALL_CATS_FILTERED")
-                .build();
-        return readDataFromRequest(message);
-    }
-
-    public Object befriendCats(long cat1Id, long cat2Id) throws BadRequestException, JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(
-                        Map.of("cat1Id", cat1Id, "cat2Id", cat2Id)))
-                .setHeader("action", "BEFRIEND_CATS")
-                .build();
-        return readDataFromRequest(message);
-    }
-
-    public Object unfriendCats(long cat1Id, long cat2Id) throws BadRequestException, JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(
-                        Map.of("cat1Id", cat1Id, "cat2Id", cat2Id)))
-                .setHeader("action", "UNFRIEND_CATS")
-                .build();
-        return readDataFromRequest(message);
-    }
-
-    public boolean ownerOwnsCat(long ownerId, long catId) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(
-                        Map.of("ownerId", ownerId, "catId", catId)))
-                .setHeader("action", "OWNER_OWNS_CAT")
-                .build();
-        return (Boolean) readDataFromRequest(message);
-    }
-}
\ No newline at end of file
+    public CatClientService(@Qualifier("catRpcClient") RpcClient catRpcClient,
+                            SingleFlight singleFlight,
+                            @Value("${gateway.batch.chunk-size}") int batchChunkSize) {
+        this.catRpcClient = catRpcClient;
+        this.singleFlight = singleFlight;
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    public CompletableFuture<CatDto> createCat(CatDto catDto) throws JsonProcessingException {
+        return catRpcClient.call("CREATE_CAT", catDto, CAT);
+    }
+
+    public CompletableFuture<List<BatchItemResult<CatDto>>> createCats(List<CatDto> cats) {
+        return Batches.inChunks(cats, batchChunkSize, chunk -> sendBatch("CREATE_CATS", chunk));
+    }
+
+    public CompletableFuture<List<BatchItemResult<CatDto>>> updateCats(List<CatDto> cats) {
+        return Batches.inChunks(cats, batchChunkSize, chunk -> sendBatch("UPDATE_CATS", chunk));
+    }
+
+    private CompletableFuture<List<BatchItemResult<CatDto>>> sendBatch(String action, List<CatDto> chunk) {
+        return catRpcClient.call(action, new CatBatchRequest(chunk), CAT_RESULTS);
+    }
+
+    public CompletableFuture<RawReply> getCat(long id, List<String> fields) throws JsonProcessingException {
+        return catRpcClient.callRaw("GET_CAT_BY_ID", new FetchRequest(null, id, normalize(fields)));
+    }
+
+    public CompletableFuture<Long> getCatVersion(long id) throws JsonProcessingException {
+        return catRpcClient.call("GET_CAT_VERSION", new IdRequest(id), VERSION);
+    }
+
+    public CompletableFuture<Long> getCatVersionIfOwned(long ownerId, long id) throws JsonProcessingException {
+        return catRpcClient.call("GET_CAT_VERSION_IF_OWNED", new OwnedCatRequest(ownerId, id), VERSION);
+    }
+
+    public CompletableFuture<CatDto> updateCat(long id, CatDto catDto) throws JsonProcessingException {
+        return catRpcClient.call("UPDATE_CAT", new UpdateCatRequest(null, id, catDto), CAT);
+    }
+
+    public CompletableFuture<String> deleteCat(long id) throws JsonProcessingException {
+        return catRpcClient.call("DELETE_CAT", new IdRequest(id), STATUS);
+    }
+
+    public CompletableFuture<RawReply> getAllCatsFiltered(CatFilter filter, int page, int size) throws JsonProcessingException {
+        var request = new CatListRequest(normalize(filter), page, size, null, null);
+        return singleFlight.execute("GET_ALL_CATS_FILTERED", request,
+                () -> catRpcClient.callRaw("GET_ALL_CATS_FILTERED", request));
+    }
+
+    public CompletableFuture<RawReply> getAllCatsAfter(CatFilter filter, String sort, String after, int size) throws JsonProcessingException {
+        var request = new CatListRequest(normalize(filter), 0, size, sort, after);
+        return singleFlight.execute("GET_ALL_CATS_FILTERED", request,
+                () -> catRpcClient.callRaw("GET_ALL_CATS_FILTERED", request));
+    }
+
+    public CompletableFuture<List<CatDto>> exportCats(long afterId, int limit) throws JsonProcessingException {
+        return catRpcClient.call("EXPORT_CATS", new ExportRequest(afterId, limit), CATS);
+    }
+
+    private static CatFilter normalize(CatFilter filter) {
+        return new CatFilter(filter.ownerId(),
+                filter.colors() == null ? null : filter.colors().stream()
+                        .distinct()
+                        .sorted()
+                        .toList(),
+                filter.birthdateAfter(),
+                filter.birthdateBefore(),
+                normalize(filter.fields()));
+    }
+
+    private static List<String> normalize(List<String> fields) {
+        if (fields == null)
+            return null;
+        return fields.stream()
+                .distinct()
+                .sorted()
+                .toList();
+    }
+
+    public CompletableFuture<String> befriendCats(long cat1Id, long cat2Id) throws BadRequestException, JsonProcessingException {
+        return catRpcClient.call("BEFRIEND_CATS", new CatPairRequest(null, cat1Id, cat2Id), STATUS);
+    }
+
+    public CompletableFuture<String> unfriendCats(long cat1Id, long cat2Id) throws BadRequestException, JsonProcessingException {
+        return catRpcClient.call("UNFRIEND_CATS", new CatPairRequest(null, cat1Id, cat2Id), STATUS);
+    }
+
+    public CompletableFuture<RawReply> getCatIfOwned(long ownerId, long id, List<String> fields) throws JsonProcessingException {
+        return catRpcClient.callRaw("GET_CAT_IF_OWNED", new FetchRequest(ownerId, id, normalize(fields)));
+    }
+
+    public CompletableFuture<CatDto> updateCatIfOwned(long ownerId, long id, CatDto catDto) throws JsonProcessingException {
+        return catRpcClient.call("UPDATE_CAT_IF_OWNED", new UpdateCatRequest(ownerId, id, catDto), CAT);
+    }
+
+    public CompletableFuture<String> deleteCatIfOwned(long ownerId, long id) throws JsonProcessingException {
+        return catRpcClient.call("DELETE_CAT_IF_OWNED", new OwnedCatRequest(ownerId, id), STATUS);
+    }
+
+    public CompletableFuture<String> befriendCatsIfOwned(long ownerId, long cat1Id, long cat2Id) throws JsonProcessingException {
+        return catRpcClient.call("BEFRIEND_CATS_IF_OWNED", new CatPairRequest(ownerId, cat1Id, cat2Id), STATUS);
+    }
+
+    public CompletableFuture<String> unfriendCatsIfOwned(long ownerId, long cat1Id, long cat2Id) throws JsonProcessingException {
+        return catRpcClient.call("UNFRIEND_CATS_IF_OWNED", new CatPairRequest(ownerId, cat1Id, cat2Id), STATUS);
+    }
+
+    // ownerId is null for admins, the cat service then skips the ownership check
+    public CompletableFuture<List<Long>> getMutualFriends(Long ownerId, long id, long otherId) throws JsonProcessingException {
+        return catRpcClient.call("GET_MUTUAL_FRIENDS", new GraphRequest(ownerId, id, otherId, 0, 0), CAT_IDS);
+    }
+
+    public CompletableFuture<List<CatDistance>> getFriendsWithin(Long ownerId, long id, int depth, int limit) throws JsonProcessingException {
+        return catRpcClient.call("GET_FRIENDS_WITHIN", new GraphRequest(ownerId, id, null, depth, limit), DISTANCES);
+    }
+
+    public CompletableFuture<List<Long>> getFriendshipPath(Long ownerId, long fromId, long toId) throws JsonProcessingException {
+        return catRpcClient.call("GET_FRIENDSHIP_PATH", new GraphRequest(ownerId, fromId, toId, 0, 0), CAT_IDS);
+    }
+
+    public CompletableFuture<FriendComponent> getFriendComponent(Long ownerId, long id, int limit) throws JsonProcessingException {
+        return catRpcClient.call("GET_FRIEND_COMPONENT", new GraphRequest(ownerId, id, null, 0, limit), COMPONENT);
+    }
+}
@@ -1,140 +1,250 @@
 package com.mikkkkkkka.gateway.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mikkkkkkka.common.exception.ServiceUnavailableException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.mikkkkkkka.common.model.dto.ApiResponse;
+import com.mikkkkkkka.common.model.dto.BatchItemResult;
+import com.mikkkkkkka.common.model.dto.CursorPage;
 import com.mikkkkkkka.common.model.dto.OwnerDto;
 import com.mikkkkkkka.common.model.dto.OwnerDtoWithCats;
 import com.mikkkkkkka.common.model.filter.OwnerFilter;
-import com.mikkkkkkka.gateway.config.RabbitMQConfig;
-import com.mikkkkkkka.gateway.exception.TransferredHttpException;
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageBuilder;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import com.mikkkkkkka.common.rpc.request.ExportRequest;
+import com.mikkkkkkka.common.rpc.request.FetchRequest;
+import com.mikkkkkkka.common.rpc.request.IdRequest;
+import com.mikkkkkkka.common.rpc.request.IdsRequest;
+import com.mikkkkkkka.common.rpc.request.OwnedCatRequest;
+import com.mikkkkkkka.common.rpc.request.OwnerBatchRequest;
+import com.mikkkkkkka.common.rpc.request.OwnerListRequest;
+import com.mikkkkkkka.common.rpc.request.UpdateOwnerRequest;
+import com.mikkkkkkka.gateway.rpc.RpcClient;
+import com.mikkkkkkka.gateway.rpc.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service
 public class OwnerClientService {
 
-    private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper;
+    private static final TypeReference<ApiResponse<OwnerDto>> OWNER = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<List<OwnerDto>>> OWNERS = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<CursorPage<OwnerDto>>> OWNER_PAGE = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<List<BatchItemResult<OwnerDto>>>> OWNER_RESULTS = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<Long>> VERSION = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<String>> STATUS = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<Map<String, Object>>> OWNER_ROW = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<List<Map<String, Object>>>> OWNER_ROWS = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<CursorPage<Map<String, Object>>>> OWNER_ROW_PAGE = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<Map<Long, List<Long>>>> CAT_IDS_BY_OWNER = new TypeReference<>() {
+    };
+
+    private final RpcClient ownerRpcClient;
+    private final RpcClient catRpcClient;
+    private final SingleFlight singleFlight;
+    private final int batchChunkSize;
+    private final MeterRegistry meterRegistry;
 
     @Autowired
-    public OwnerClientService(RabbitTemplate rabbitTemplate, ObjectMapper objectMapper) {
-        this.rabbitTemplate = rabbitTemplate;
-        this.objectMapper = objectMapper;
-    }
-
-    private Object readDataFromResponse(Message message) throws RuntimeException {
-        var response = (ApiResponse<?>) rabbitTemplate.convertSendAndReceive(
-                RabbitMQConfig.OWNER_EXCHANGE,
-                RabbitMQConfig.OWNER_ROUTING_KEY,
-                message);
-        if (response == null)
-            throw new ServiceUnavailableException("Owner service unavailable");
-        if (response.status() != HttpStatus.OK.value()) {
-            RuntimeException exception = objectMapper.convertValue(response.data(), RuntimeException.class);
-            throw new TransferredHttpException(response.status(), exception);
-        }
-        return response.data();
-    }
-
-    private OwnerDtoWithCats addCatsToOwner(OwnerDto ownerNoCats) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(ownerNoCats.id()))
-                .setHeader("action", "GET_CATS_BY_OWNER_ID")
-                .build();
-        var response = (ApiResponse<?>) rabbitTemplate.convertSendAndReceive(
-                RabbitMQConfig.CAT_EXCHANGE,
-                RabbitMQConfig.CAT_ROUTING_KEY,
-                message);
-        if (response == null)
-            throw new ServiceUnavailableException("Owner service unavailable");
-        if (response.status() != HttpStatus.OK.value()) {
-            RuntimeException exception = objectMapper.convertValue(response.data(), RuntimeException.class);
-            throw new TransferredHttpException(response.status(), exception);
-        }
-        var list = (List<?>) response.data();
-        var cats = list.stream()
-                .map(obj -> (Number) obj)
+    public OwnerClientService(@Qualifier("ownerRpcClient") RpcClient ownerRpcClient,
+                              @Qualifier("catRpcClient") RpcClient catRpcClient,
+                              SingleFlight singleFlight,
+                              @Value("${gateway.batch.chunk-size}") int batchChunkSize,
+                              MeterRegistry meterRegistry) {
+        this.ownerRpcClient = ownerRpcClient;
+        this.catRpcClient = catRpcClient;
+        this.singleFlight = singleFlight;
+        this.batchChunkSize = batchChunkSize;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Time spent enriching owners with their cat ids, on top of the owner call itself
+    private <T> CompletableFuture<T> timeCats(String action, Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        return call.get().whenComplete((value, throwable) -> Timer.builder("gateway.owner.cats")
+                .tag("action", action)
+                .tag("outcome", throwable == null ? "success" : "error")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    private CompletableFuture<OwnerDtoWithCats> addCatsToOwner(OwnerDto ownerNoCats) {
+        return addCatsToOwners(List.of(ownerNoCats))
+                .thenApply(owners -> owners.get(0));
+    }
+
+    private CompletableFuture<List<OwnerDtoWithCats>> addCatsToOwners(List<OwnerDto> ownersNoCats) {
+        if (ownersNoCats.isEmpty())
+            return CompletableFuture.completedFuture(List.of());
+        var request = new IdsRequest(ownersNoCats.stream()
+                .map(OwnerDto::id)
+                .toList());
+        return timeCats("GET_CATS_BY_OWNER_IDS", () -> catRpcClient.call("GET_CATS_BY_OWNER_IDS", request, CAT_IDS_BY_OWNER)
+                .thenApply(catsByOwner -> ownersNoCats.stream()
+                        .map(owner -> new OwnerDtoWithCats(owner,
+                                catsByOwner.getOrDefault(owner.id(), List.of())))
+                        .toList()));
+    }
+
+    // "cats" is not an owner column: the owner service never sees it, the ids are fetched from the cat service instead
+    private CompletableFuture<List<Map<String, Object>>> addCatsToRows(List<Map<String, Object>> rows, List<String> fields) {
+        if (!fields.contains("cats") || rows.isEmpty())
+            return CompletableFuture.completedFuture(rows);
+        var request = new IdsRequest(rows.stream()
+                .map(row -> ((Number) row.get("id")).longValue())
+                .toList());
+        return catRpcClient.call("GET_CATS_BY_OWNER_IDS", request, CAT_IDS_BY_OWNER)
+                .thenApply(catsByOwner -> {
+                    rows.forEach(row -> row.put("cats",
+                            catsByOwner.getOrDefault(((Number) row.get("id")).longValue(), List.of())));
+                    return rows;
+                });
+    }
+
+    private static OwnerFilter normalize(OwnerFilter filter) {
+        return new OwnerFilter(filter.birthdayAfter(), filter.birthdayBefore(), normalize(filter.fields()));
+    }
+
+    private static List<String> normalize(List<String> fields) {
+        if (fields == null)
+            return null;
+        return fields.stream()
+                .distinct()
+                .sorted()
                 .toList();
-        return new OwnerDtoWithCats(ownerNoCats, cats);
-    }
-
-    public Object createOwner(OwnerDto ownerDto) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(ownerDto))
-                .setHeader("action", "CREATE_OWNER")
-                .build();
-        return readDataFromResponse(message);
-    }
-
-    public Object getOwner(long id) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(id))
-                .setHeader("action", "GET_OWNER_BY_ID")
-                .build();
-        OwnerDto ownerNoCats = objectMapper.convertValue(readDataFromResponse(message), OwnerDto.class);
-        return addCatsToOwner(ownerNoCats);
-    }
-
-    public Object updateOwner(long id, OwnerDto ownerDto) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(
-                        Map.of("id", id, "owner", ownerDto)))
-                .setHeader("action", "UPDATE_OWNER")
-                .build();
-        OwnerDto ownerNoCats = objectMapper.convertValue(readDataFromResponse(message), OwnerDto.class);
-        return addCatsToOwner(ownerNoCats);
-    }
-
-    public Object deleteOwner(long id) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(id))
-                .setHeader("action", "DELETE_OWNER")
-                .build();
-        return readDataFromResponse(message);
-    }
-
-    public Object getAllOwnersFiltered(OwnerFilter filter, int page, int size) throws JsonProcessingException {
-        Message message = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(
-                        Map.of("filter", filter, "page", page, "size", size)))
-                .setHeader("action", "GET_ALL_OWNERS_FILTERED")
-                .build();
-        List<?> list = objectMapper.convertValue(readDataFromResponse(message), List.class);
-        List<OwnerDtoWithCats> result = new ArrayList<>(); // Очень хотелось сделать через Stream Api но не получилось. ;-;
-        for (Object obj : list) {
-            OwnerDto ownerDto = objectMapper.convertValue(obj, OwnerDto.class);
-            OwnerDtoWithCats ownerDtoWithCats = addCatsToOwner(ownerDto);
-            result.add(ownerDtoWithCats);
-        }
-        return result;
-    }
-
-    public Object addCatToOwner(long ownerId, long catId) throws JsonProcessingException {
-        getOwner(ownerId);
-        Message message2 = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(
-                        Map.of("ownerId", ownerId, "catId", catId)))
-                .setHeader("action", "SET_OWNER_TO_CAT")
-                .build();
-        return readDataFromResponse(message2);
-    }
-
-    public Object removeCatFromOwner(long ownerId, long catId) throws JsonProcessingException {
-        getOwner(ownerId);
-        Message message2 = MessageBuilder
-                .withBody(objectMapper.writeValueAsBytes(catId))
-                .setHeader("action", "UNSET_OWNER_FROM_CAT")
-                .build();
-        return readDataFromResponse(message2);
-    }
-}
\ No newline at end of file
+    }
+
+    private static List<String> ownerColumns(List<String> fields) {
+        return fields.stream()
+                .filter(field -> !field.equals("cats"))
+                .toList();
+    }
+
+    private static OwnerFilter ownerColumns(OwnerFilter filter) {
+        return new OwnerFilter(filter.birthdayAfter(), filter.birthdayBefore(), ownerColumns(filter.fields()));
+    }
+
+    public CompletableFuture<OwnerDto> createOwner(OwnerDto ownerDto) throws JsonProcessingException {
+        return ownerRpcClient.call("CREATE_OWNER", ownerDto, OWNER);
+    }
+
+    public CompletableFuture<List<BatchItemResult<OwnerDto>>> createOwners(List<OwnerDto> owners) {
+        return Batches.inChunks(owners, batchChunkSize, chunk -> sendBatch("CREATE_OWNERS", chunk));
+    }
+
+    public CompletableFuture<List<BatchItemResult<OwnerDto>>> updateOwners(List<OwnerDto> owners) {
+        return Batches.inChunks(owners, batchChunkSize, chunk -> sendBatch("UPDATE_OWNERS", chunk));
+    }
+
+    private CompletableFuture<List<BatchItemResult<OwnerDto>>> sendBatch(String action, List<OwnerDto> chunk) {
+        return ownerRpcClient.call(action, new OwnerBatchRequest(chunk), OWNER_RESULTS);
+    }
+
+    public CompletableFuture<OwnerDtoWithCats> getOwner(long id) throws JsonProcessingException {
+        return ownerRpcClient.call("GET_OWNER_BY_ID", new FetchRequest(null, id, null), OWNER)
+                .thenCompose(this::addCatsToOwner);
+    }
+
+    public CompletableFuture<Map<String, Object>> getOwnerProjected(long id, List<String> fields) throws JsonProcessingException {
+        return ownerRpcClient.call("GET_OWNER_BY_ID", new FetchRequest(null, id, ownerColumns(fields)), OWNER_ROW)
+                .thenCompose(row -> addCatsToRows(List.of(row), fields))
+                .thenApply(rows -> rows.get(0));
+    }
+
+    public CompletableFuture<Long> getOwnerVersion(long id) throws JsonProcessingException {
+        return ownerRpcClient.call("GET_OWNER_VERSION", new IdRequest(id), VERSION);
+    }
+
+    // The id projection of the batch lookup: GET_CATS_BY_OWNER_ID would load every cat with its friends only to
+    // keep the ids
+    public CompletableFuture<List<Long>> getCatIdsOfOwner(long id) {
+        return catRpcClient.call("GET_CATS_BY_OWNER_IDS", new IdsRequest(List.of(id)), CAT_IDS_BY_OWNER)
+                .thenApply(catsByOwner -> catsByOwner.getOrDefault(id, List.of()));
+    }
+
+    public CompletableFuture<OwnerDtoWithCats> updateOwner(long id, OwnerDto ownerDto) throws JsonProcessingException {
+        return ownerRpcClient.call("UPDATE_OWNER", new UpdateOwnerRequest(id, ownerDto), OWNER)
+                .thenCompose(this::addCatsToOwner);
+    }
+
+    public CompletableFuture<String> deleteOwner(long id) throws JsonProcessingException {
+        return ownerRpcClient.call("DELETE_OWNER", new IdRequest(id), STATUS);
+    }
+
+    public CompletableFuture<List<OwnerDtoWithCats>> getAllOwnersFiltered(OwnerFilter filter, int page, int size) throws JsonProcessingException {
+        var request = new OwnerListRequest(filter, page, size, null, null);
+        return singleFlight.execute("GET_ALL_OWNERS_FILTERED", request,
+                () -> ownerRpcClient.call("GET_ALL_OWNERS_FILTERED", request, OWNERS)
+                        .thenCompose(this::addCatsToOwners));
+    }
+
+    public CompletableFuture<CursorPage<OwnerDtoWithCats>> getAllOwnersAfter(OwnerFilter filter, String sort, String after, int size) throws JsonProcessingException {
+        var request = new OwnerListRequest(filter, 0, size, sort, after);
+        return singleFlight.execute("GET_ALL_OWNERS_FILTERED", request,
+                () -> ownerRpcClient.call("GET_ALL_OWNERS_FILTERED", request, OWNER_PAGE)
+                        .thenCompose(page -> addCatsToOwners(page.items())
+                                .thenApply(owners -> new CursorPage<>(owners, page.next()))));
+    }
+
+    // the single-flight key keeps "cats" in the field set, the request sent to the owner service does not
+    public CompletableFuture<List<Map<String, Object>>> getAllOwnersProjected(OwnerFilter filter, int page, int size) throws JsonProcessingException {
+        OwnerFilter normalized = normalize(filter);
+        var key = new OwnerListRequest(normalized, page, size, null, null);
+        var request = new OwnerListRequest(ownerColumns(normalized), page, size, null, null);
+        return singleFlight.execute("GET_ALL_OWNERS_FILTERED", key,
+                () -> ownerRpcClient.call("GET_ALL_OWNERS_FILTERED", request, OWNER_ROWS)
+                        .thenCompose(rows -> addCatsToRows(rows, normalized.fields())));
+    }
+
+    public CompletableFuture<CursorPage<Map<String, Object>>> getAllOwnersProjectedAfter(OwnerFilter filter, String sort, String after, int size) throws JsonProcessingException {
+        OwnerFilter normalized = normalize(filter);
+        var key = new OwnerListRequest(normalized, 0, size, sort, after);
+        var request = new OwnerListRequest(ownerColumns(normalized), 0, size, sort, after);
+        return singleFlight.execute("GET_ALL_OWNERS_FILTERED", key,
+                () -> ownerRpcClient.call("GET_ALL_OWNERS_FILTERED", request, OWNER_ROW_PAGE)
+                        .thenCompose(page -> addCatsToRows(page.items(), normalized.fields())
+                                .thenApply(rows -> new CursorPage<>(rows, page.next()))));
+    }
+
+    public CompletableFuture<List<OwnerDtoWithCats>> exportOwners(long afterId, int limit) throws JsonProcessingException {
+        return ownerRpcClient.call("EXPORT_OWNERS", new ExportRequest(afterId, limit), OWNERS)
+                .thenCompose(this::addCatsToOwners);
+    }
+
+    public CompletableFuture<String> addCatToOwner(long ownerId, long catId) throws JsonProcessingException {
+        return getOwner(ownerId)
+                .thenCompose(owner -> catRpcClient.call("SET_OWNER_TO_CAT", new OwnedCatRequest(ownerId, catId), STATUS));
+    }
+
+    public CompletableFuture<String> removeCatFromOwner(long ownerId, long catId) throws JsonProcessingException {
+        return getOwner(ownerId)
+                .thenCompose(owner -> catRpcClient.call("UNSET_OWNER_FROM_CAT", new IdRequest(catId), STATUS));
+    }
+
+    public CompletableFuture<String> addCatToOwnerIfUnowned(long ownerId, long catId) throws JsonProcessingException {
+        return getOwner(ownerId)
+                .thenCompose(owner -> catRpcClient.call("SET_OWNER_TO_CAT_IF_UNOWNED", new OwnedCatRequest(ownerId, catId), STATUS));
+    }
+
+    // a missing owner cannot own the cat, so the cat service's check covers the owner lookup
+    public CompletableFuture<String> removeCatFromOwnerIfOwned(long ownerId, long catId) throws JsonProcessingException {
+        return catRpcClient.call("UNSET_OWNER_FROM_CAT_IF_OWNED", new OwnedCatRequest(ownerId, catId), STATUS);
+    }
+}
@@ -0,0 +1,12 @@
+-- The schema ddl-auto=update used to create; existing databases are baselined at this version.
+-- The unique constraints are backed by indexes, so findByUsername and the owner lookup need no other.
+create table service.users (
+    id       bigint generated by default as identity,
+    username varchar(255) not null,
+    password varchar(255),
+    role     varchar(255) check (role in ('ADMIN', 'USER')),
+    owner_id bigint,
+    primary key (id),
+    constraint users_username_key unique (username),
+    constraint users_owner_id_key unique (owner_id)
+);